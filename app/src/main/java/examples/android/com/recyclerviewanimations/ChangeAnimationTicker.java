@@ -0,0 +1,331 @@
+package examples.android.com.recyclerviewanimations;
+
+import android.animation.ValueAnimator;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.animation.AnimationUtils;
+import android.view.animation.LinearInterpolator;
+import android.widget.TextView;
+
+import java.util.Arrays;
+
+/**
+ * Runs every change animation of a {@link MyChangeAnimator} from one frame callback. The
+ * state of each running animation lives in a slot of a set of flat arrays, and
+ * each frame walks the active slots once, so the per-frame cost grows with the number of
+ * animating items rather than with a graph of animator objects per item.
+ * <p>
+ * An animation is a color fade through black on the container background and a rotation
+ * of the text, switching the text halfway, when it is perpendicular to the user; see
+ * {@link ChangeFrames} for its timeline.
+ */
+class ChangeAnimationTicker implements ValueAnimator.AnimatorUpdateListener {
+
+    interface Callback {
+        /**
+         * Called once the animation of {@code holder} has finished or been ended. Its slot
+         * has already been freed.
+         */
+        void onChangeAnimationFinished(MyViewHolder holder);
+
+        /**
+         * Called once per frame, before the {@code animating} running animations are
+         * advanced.
+         */
+        void onFrame(int animating);
+    }
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private static final int FLAG_COLOR = 1;
+    private static final int FLAG_TEXT = 1 << 1;
+    // the animation skips the first half (fading to black, rotating the old text out)
+    // because it interrupted one that was already past it
+    private static final int FLAG_SECOND_HALF_ONLY = 1 << 2;
+    private static final int FLAG_IN_FIRST_HALF = 1 << 3;
+    // the animation runs in render-property mode, see setUseRenderProperties()
+    private static final int FLAG_RENDER_PROPERTIES = 1 << 4;
+
+    // The single frame callback. Choreographer would be the direct choice, but it needs
+    // API 16 and minSdkVersion is 14; an endless ValueAnimator gives one callback per
+    // frame on every version and is itself Choreographer-driven where available.
+    private final ValueAnimator frameAnimator;
+    private final Callback callback;
+    private boolean useRenderProperties;
+
+    // one slot per running animation; slots [0, count) are active
+    private int count;
+    private MyViewHolder[] holders = new MyViewHolder[INITIAL_CAPACITY];
+    private int[] flags = new int[INITIAL_CAPACITY];
+    private long[] startTimes = new long[INITIAL_CAPACITY];
+    private long[] halfPlayTimes = new long[INITIAL_CAPACITY];
+    private int[] fromColors = new int[INITIAL_CAPACITY];
+    private int[] toColors = new int[INITIAL_CAPACITY];
+    private int[] currentColors = new int[INITIAL_CAPACITY];
+    // color values shown as the text before and after the change
+    private int[] oldLabels = new int[INITIAL_CAPACITY];
+    private int[] newLabels = new int[INITIAL_CAPACITY];
+    // layer type of the text before it was put on a hardware layer
+    private int[] textLayerTypes = new int[INITIAL_CAPACITY];
+
+    ChangeAnimationTicker(Callback callback) {
+        this.callback = callback;
+        frameAnimator = ValueAnimator.ofFloat(0, 1);
+        frameAnimator.setInterpolator(new LinearInterpolator());
+        frameAnimator.setRepeatCount(ValueAnimator.INFINITE);
+        frameAnimator.addUpdateListener(this);
+    }
+
+    /**
+     * In render-property mode, animations started from now on change only properties the
+     * renderer can apply without redrawing the row. The fade through black becomes the
+     * alpha of a black shade laid over the row, so the background is only set twice, and
+     * the text rotates on a hardware layer that is only redrawn when the text switches.
+     * The shade is hidden and the text's layer type restored when the animation ends.
+     */
+    void setUseRenderProperties(boolean useRenderProperties) {
+        this.useRenderProperties = useRenderProperties;
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    int size() {
+        return count;
+    }
+
+    /**
+     * Slot of the animation running on {@code holder}, or -1 if there is none. Each
+     * holder carries its own slot, so this is a field read, not a search.
+     */
+    int indexOf(RecyclerView.ViewHolder holder) {
+        return holder instanceof MyViewHolder ? ((MyViewHolder) holder).changeAnimationSlot : -1;
+    }
+
+    boolean isInFirstHalf(int slot) {
+        return (flags[slot] & FLAG_IN_FIRST_HALF) != 0;
+    }
+
+    boolean animatesColor(int slot) {
+        return (flags[slot] & FLAG_COLOR) != 0;
+    }
+
+    /**
+     * How far the animation in {@code slot} is into whichever half it is running.
+     */
+    long getHalfPlayTime(int slot) {
+        return halfPlayTimes[slot];
+    }
+
+    int getCurrentColor(int slot) {
+        return currentColors[slot];
+    }
+
+    /**
+     * Starts animating {@code holder} and applies its first frame right away. A holder can
+     * only run one animation at a time; finish the previous one first.
+     *
+     * @param seekTime play time to start at, when picking up from an interrupted animation
+     */
+    void start(MyViewHolder holder, int fromColor, int toColor, int oldLabel, int newLabel,
+               boolean animateColor, boolean animateText, boolean secondHalfOnly, long seekTime) {
+        if (holder.changeAnimationSlot >= 0) {
+            throw new IllegalStateException("already animating: " + holder);
+        }
+        ensureCapacity(count + 1);
+        int slot = count++;
+        int slotFlags = 0;
+        if (animateColor) {
+            slotFlags |= FLAG_COLOR;
+        }
+        if (animateText) {
+            slotFlags |= FLAG_TEXT;
+        }
+        if (secondHalfOnly) {
+            slotFlags |= FLAG_SECOND_HALF_ONLY;
+        } else {
+            slotFlags |= FLAG_IN_FIRST_HALF;
+        }
+        if (useRenderProperties) {
+            slotFlags |= FLAG_RENDER_PROPERTIES;
+        }
+        holders[slot] = holder;
+        holder.changeAnimationSlot = slot;
+        flags[slot] = slotFlags;
+        fromColors[slot] = fromColor;
+        toColors[slot] = toColor;
+        currentColors[slot] = fromColor;
+        oldLabels[slot] = oldLabel;
+        newLabels[slot] = newLabel;
+        halfPlayTimes[slot] = 0;
+        long now = AnimationUtils.currentAnimationTimeMillis();
+        startTimes[slot] = now - Math.max(seekTime, 0);
+
+        if (animateText && !secondHalfOnly) {
+            // text was changed as part of the item change notification. Change
+            // it back for the first phase of the animation
+            holder.updateLabel(oldLabel);
+        }
+        if (useRenderProperties) {
+            if (animateColor) {
+                // the shade fades in over the old color, or out over the new one
+                holder.container.setBackgroundColor(secondHalfOnly ? toColor : fromColor);
+                holder.shade.setAlpha(secondHalfOnly ? 1 : 0);
+                holder.shade.setVisibility(View.VISIBLE);
+            }
+            if (animateText) {
+                TextView textView = holder.getTextView();
+                textLayerTypes[slot] = textView.getLayerType();
+                textView.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+            }
+        }
+        advance(slot, now);
+        if (!frameAnimator.isStarted()) {
+            frameAnimator.start();
+        }
+    }
+
+    /**
+     * Stops the animation in {@code slot} and reports it finished. With {@code jumpToEnd}
+     * the views are first set to the end values, otherwise they are left as they are.
+     */
+    void finish(int slot, boolean jumpToEnd) {
+        MyViewHolder holder = holders[slot];
+        if ((flags[slot] & FLAG_RENDER_PROPERTIES) != 0) {
+            if ((flags[slot] & FLAG_COLOR) != 0) {
+                // keep showing the color the shade made up
+                holder.shade.setVisibility(View.GONE);
+                holder.shade.setAlpha(0);
+                holder.container.setBackgroundColor(currentColors[slot]);
+            }
+            if ((flags[slot] & FLAG_TEXT) != 0) {
+                holder.getTextView().setLayerType(textLayerTypes[slot], null);
+            }
+        }
+        if (jumpToEnd) {
+            if ((flags[slot] & FLAG_COLOR) != 0) {
+                holder.container.setBackgroundColor(toColors[slot]);
+            }
+            if ((flags[slot] & FLAG_TEXT) != 0) {
+                holder.updateLabel(newLabels[slot]);
+                holder.getTextView().setRotationX(0);
+            }
+        }
+        removeSlot(slot);
+        callback.onChangeAnimationFinished(holder);
+    }
+
+    /**
+     * Ends every running animation, setting the views to their end values.
+     */
+    void finishAll() {
+        for (int i = count - 1; i >= 0; i--) {
+            if (i < count) {
+                finish(i, true);
+            }
+        }
+    }
+
+    @Override
+    public void onAnimationUpdate(ValueAnimator animation) {
+        long now = AnimationUtils.currentAnimationTimeMillis();
+        callback.onFrame(count);
+        // Backwards, so that finishing a slot (which moves the last slot into it) never
+        // skips one. Animations started from a finish callback are appended and first
+        // advanced on the next frame.
+        for (int i = count - 1; i >= 0; i--) {
+            if (i < count && advance(i, now)) {
+                finish(i, false);
+            }
+        }
+    }
+
+    /**
+     * Sets the views of {@code slot} to their state at {@code now}.
+     *
+     * @return whether the animation has reached its end
+     */
+    private boolean advance(int slot, long now) {
+        MyViewHolder holder = holders[slot];
+        int slotFlags = flags[slot];
+        boolean secondHalfOnly = (slotFlags & FLAG_SECOND_HALF_ONLY) != 0;
+        long playTime = now - startTimes[slot];
+        boolean firstHalf = ChangeFrames.isFirstHalf(playTime, secondHalfOnly);
+
+        if (!firstHalf && (slotFlags & FLAG_IN_FIRST_HALF) != 0) {
+            flags[slot] = slotFlags &= ~FLAG_IN_FIRST_HALF;
+            if ((slotFlags & FLAG_TEXT) != 0) {
+                // Set it to the new text when the old text is perpendicular to the
+                // user (thus making the switch invisible)
+                holder.updateLabel(newLabels[slot]);
+            }
+            if ((slotFlags & (FLAG_COLOR | FLAG_RENDER_PROPERTIES))
+                    == (FLAG_COLOR | FLAG_RENDER_PROPERTIES)) {
+                // switch colors while the shade is fully opaque
+                holder.container.setBackgroundColor(toColors[slot]);
+            }
+        }
+        long halfPlayTime = ChangeFrames.halfPlayTime(playTime, secondHalfOnly);
+        halfPlayTimes[slot] = halfPlayTime;
+        if ((slotFlags & FLAG_COLOR) != 0) {
+            // fade to black on the container background, then back up to the new color
+            int color = ChangeFrames.color(fromColors[slot], toColors[slot], firstHalf,
+                    halfPlayTime);
+            currentColors[slot] = color;
+            if ((slotFlags & FLAG_RENDER_PROPERTIES) != 0) {
+                holder.shade.setAlpha(ChangeFrames.shadeAlpha(firstHalf, halfPlayTime));
+            } else {
+                holder.container.setBackgroundColor(color);
+            }
+        }
+        if ((slotFlags & FLAG_TEXT) != 0) {
+            // rotate the old text to be perpendicular to the user, then the new text
+            // from perpendicular to 0
+            holder.getTextView().setRotationX(ChangeFrames.rotation(firstHalf, halfPlayTime));
+        }
+        return ChangeFrames.isFinished(playTime, secondHalfOnly);
+    }
+
+    /**
+     * Frees {@code slot} by moving the last active slot into it.
+     */
+    private void removeSlot(int slot) {
+        holders[slot].changeAnimationSlot = -1;
+        int last = --count;
+        if (slot != last) {
+            holders[slot] = holders[last];
+            holders[slot].changeAnimationSlot = slot;
+            flags[slot] = flags[last];
+            startTimes[slot] = startTimes[last];
+            halfPlayTimes[slot] = halfPlayTimes[last];
+            fromColors[slot] = fromColors[last];
+            toColors[slot] = toColors[last];
+            currentColors[slot] = currentColors[last];
+            oldLabels[slot] = oldLabels[last];
+            newLabels[slot] = newLabels[last];
+            textLayerTypes[slot] = textLayerTypes[last];
+        }
+        holders[last] = null;
+        if (count == 0) {
+            frameAnimator.cancel();
+        }
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity <= holders.length) {
+            return;
+        }
+        int newCapacity = Math.max(holders.length * 2, minCapacity);
+        holders = Arrays.copyOf(holders, newCapacity);
+        flags = Arrays.copyOf(flags, newCapacity);
+        startTimes = Arrays.copyOf(startTimes, newCapacity);
+        halfPlayTimes = Arrays.copyOf(halfPlayTimes, newCapacity);
+        fromColors = Arrays.copyOf(fromColors, newCapacity);
+        toColors = Arrays.copyOf(toColors, newCapacity);
+        currentColors = Arrays.copyOf(currentColors, newCapacity);
+        oldLabels = Arrays.copyOf(oldLabels, newCapacity);
+        newLabels = Arrays.copyOf(newLabels, newCapacity);
+        textLayerTypes = Arrays.copyOf(textLayerTypes, newCapacity);
+    }
+}
@@ -0,0 +1,84 @@
+package examples.android.com.recyclerviewanimations;
+
+/**
+ * The timeline of a change animation as plain math, kept free of Android classes so it
+ * can also be run and benchmarked on a plain JVM. The animation has two halves of
+ * {@link #HALF_DURATION}: the background fades to black while the old text rotates out,
+ * then the background fades to the new color while the new text rotates in. An animation
+ * that interrupts one already in its second half runs only a second half.
+ */
+final class ChangeFrames {
+    // duration of each half of the change animation (fade to black, fade from black)
+    static final long HALF_DURATION = 300;
+
+    private static final int BLACK = 0xff000000;
+
+    private ChangeFrames() {
+    }
+
+    /**
+     * Whether an animation that has been playing for {@code playTime} is in its first half.
+     */
+    static boolean isFirstHalf(long playTime, boolean secondHalfOnly) {
+        return !secondHalfOnly && playTime < HALF_DURATION;
+    }
+
+    /**
+     * How far an animation that has been playing for {@code playTime} is into whichever
+     * half it is running. This is also the time to seek an interrupting animation to.
+     */
+    static long halfPlayTime(long playTime, boolean secondHalfOnly) {
+        return secondHalfOnly || playTime < HALF_DURATION ? playTime : playTime - HALF_DURATION;
+    }
+
+    static boolean isFinished(long playTime, boolean secondHalfOnly) {
+        return playTime >= (secondHalfOnly ? HALF_DURATION : 2 * HALF_DURATION);
+    }
+
+    /**
+     * Background color {@code halfPlayTime} into the given half.
+     */
+    static int color(int fromColor, int toColor, boolean firstHalf, long halfPlayTime) {
+        int fraction = fixedFraction(halfPlayTime);
+        return firstHalf
+                ? SrgbBlend.blend(fromColor, BLACK, fraction)
+                : SrgbBlend.blend(BLACK, toColor, fraction);
+    }
+
+    /**
+     * Text rotation around the x axis {@code halfPlayTime} into the given half: the old
+     * text accelerates from 0 to perpendicular, the new one decelerates from
+     * perpendicular to 0.
+     */
+    static float rotation(boolean firstHalf, long halfPlayTime) {
+        float fraction = fraction(halfPlayTime);
+        if (firstHalf) {
+            // same curve as AccelerateInterpolator
+            return 90 * fraction * fraction;
+        }
+        // same curve as DecelerateInterpolator
+        float remaining = 1 - fraction;
+        return -90 * remaining * remaining;
+    }
+
+    /**
+     * Alpha of an opaque black shade which, laid over the old color in the first half and
+     * over the new color in the second, gives the same color as {@link #color}, to within
+     * a step per channel. A fade to black in linear light scales every channel by the
+     * same factor, and the shade must let through that factor in sRGB.
+     */
+    static float shadeAlpha(boolean firstHalf, long halfPlayTime) {
+        int fraction = fixedFraction(halfPlayTime);
+        int remaining = firstHalf ? SrgbBlend.ONE - fraction : fraction;
+        return 1 - SrgbBlend.toSrgb(remaining) / 255f;
+    }
+
+    private static float fraction(long halfPlayTime) {
+        return Math.min(1f, (float) halfPlayTime / HALF_DURATION);
+    }
+
+    // fraction() in SrgbBlend's fixed point
+    private static int fixedFraction(long halfPlayTime) {
+        return (int) (Math.min(halfPlayTime, HALF_DURATION) * SrgbBlend.ONE / HALF_DURATION);
+    }
+}
@@ -0,0 +1,33 @@
+package examples.android.com.recyclerviewanimations;
+
+/**
+ * Formats the "#rrggbb"-style labels shown on the items straight into a char buffer, so
+ * binding an item does not build a String. The output is the same as
+ * {@code "#" + Integer.toHexString(color)}.
+ */
+final class HexLabel {
+    // '#' followed by up to eight hex digits
+    static final int MAX_LENGTH = 9;
+
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    private HexLabel() {
+    }
+
+    /**
+     * Writes the label of {@code color} to the start of {@code buffer}, which must hold at
+     * least {@link #MAX_LENGTH} chars.
+     *
+     * @return the number of chars written
+     */
+    static int format(int color, char[] buffer) {
+        // like Integer.toHexString, drop leading zeros but keep at least one digit
+        int digits = Math.max(1, (Integer.SIZE - Integer.numberOfLeadingZeros(color) + 3) / 4);
+        buffer[0] = '#';
+        for (int i = digits; i > 0; i--) {
+            buffer[i] = DIGITS[color & 0xf];
+            color >>>= 4;
+        }
+        return digits + 1;
+    }
+}
@@ -0,0 +1,267 @@
+package examples.android.com.recyclerviewanimations;
+
+import java.util.Arrays;
+
+/**
+ * Primitive map from item id to position in a {@link LongList} of ids, kept up to date
+ * as the list is edited. An edit is reported with {@link #onInserted}, {@link #onRemoved}
+ * or {@link #onMoved} and costs O(1): instead of shifting the position of every entry
+ * behind it, the index appends the shift to a log. A lookup brings the one entry it
+ * finds up to date by replaying the shifts logged since that entry was last looked at.
+ * Once the log is longer than about the square root of the list's size, it is dropped
+ * and the table rebuilt in one pass on the next lookup, so edits and lookups both cost
+ * O(sqrt n) amortized at worst, and looking up the same id again right away O(1).
+ * <p>
+ * The index follows one list at a time. Looking up an id in any other list, or in its
+ * list after an edit it was not told about, rebuilds the table first.
+ */
+class IdIndex {
+    private static final int EMPTY = -1;
+    // a log of at least this many shifts is kept before the table is rebuilt
+    private static final int MIN_SHIFTS = 32;
+
+    private static final int INSERTED = 0;
+    private static final int REMOVED = 1;
+    private static final int MOVED = 2;
+
+    private long[] keys = new long[0];
+    // position of the id in keys at the same slot as of the shift in epochs, or EMPTY
+    private int[] positions = new int[0];
+    private int[] epochs = new int[0];
+    // used slots, including those of ids removed since the last rebuild that no lookup
+    // has come across yet
+    private int entries;
+    // (kind, position, count or target) of every shift since the last rebuild
+    private final IntList shifts = new IntList();
+    private boolean valid;
+    private LongList list;
+    private int listModCount;
+    private int rebuildCount;
+
+    /**
+     * Position of {@code id} in {@code ids}, or -1 if it is not there.
+     */
+    int positionOf(long id, LongList ids) {
+        if (!valid || ids != list || ids.modCount() != listModCount) {
+            rebuild(ids);
+        }
+        int mask = keys.length - 1;
+        for (int slot = hash(id) & mask; ; slot = (slot + 1) & mask) {
+            if (positions[slot] == EMPTY) {
+                return -1;
+            }
+            if (keys[slot] == id) {
+                int position = catchUp(positions[slot], epochs[slot]);
+                if (position < 0) {
+                    // removed since it was last looked up
+                    delete(slot);
+                    return -1;
+                }
+                positions[slot] = position;
+                epochs[slot] = epoch();
+                return position;
+            }
+        }
+    }
+
+    /**
+     * The {@code count} ids from {@code position} on have just been inserted into
+     * {@code ids}, the index's list or a copy of it.
+     */
+    void onInserted(LongList ids, int position, int count) {
+        if (!log(ids, INSERTED, position, count)) {
+            return;
+        }
+        if ((entries + count) * 2L > keys.length) {
+            // the table would get too full to probe quickly
+            valid = false;
+            return;
+        }
+        int epoch = epoch();
+        for (int i = position; i < position + count; i++) {
+            put(ids.get(i), i, epoch);
+        }
+    }
+
+    /**
+     * The item with id {@code id} has been inserted at {@code position}, by one of a run
+     * of edits that turned the index's list into {@code ids}. The edits must be reported
+     * in the order they were made, and {@code ids} is not read, since later edits of the
+     * run may have shifted the id away from {@code position}.
+     */
+    void onInsertedId(LongList ids, int position, long id) {
+        if (!log(ids, INSERTED, position, 1)) {
+            return;
+        }
+        if ((entries + 1) * 2L > keys.length) {
+            valid = false;
+            return;
+        }
+        put(id, position, epoch());
+    }
+
+    /**
+     * The {@code count} ids from {@code position} on have just been removed from
+     * {@code ids}, the index's list or a copy of it. Their entries are dropped when a
+     * lookup comes across them.
+     */
+    void onRemoved(LongList ids, int position, int count) {
+        log(ids, REMOVED, position, count);
+    }
+
+    /**
+     * The id at {@code from} in {@code ids}, the index's list or a copy of it, has just
+     * been moved to {@code to}.
+     */
+    void onMoved(LongList ids, int from, int to) {
+        log(ids, MOVED, from, to);
+    }
+
+    /**
+     * {@code copy} has just been made of {@code source}, and is followed from now on
+     * instead, if the index was following {@code source}.
+     */
+    void onCopied(LongList source, LongList copy) {
+        if (valid && source == list && source.modCount() == listModCount) {
+            list = copy;
+            listModCount = copy.modCount();
+        } else {
+            valid = false;
+        }
+    }
+
+    /**
+     * Number of times the table has been rebuilt, for tests.
+     */
+    int rebuildCount() {
+        return rebuildCount;
+    }
+
+    /**
+     * Appends a shift to the log and follows {@code ids} from now on.
+     *
+     * @return whether the index is still valid
+     */
+    private boolean log(LongList ids, int kind, int position, int countOrTarget) {
+        if (!valid) {
+            return false;
+        }
+        if (epoch() >= maxShifts(ids.size())) {
+            // cheaper to rebuild on the next lookup than to replay a longer log
+            valid = false;
+            return false;
+        }
+        shifts.add(kind);
+        shifts.add(position);
+        shifts.add(countOrTarget);
+        list = ids;
+        listModCount = ids.modCount();
+        return true;
+    }
+
+    /**
+     * Applies the shifts logged from {@code epoch} on to {@code position}.
+     *
+     * @return the position now, or -1 if the item has been removed
+     */
+    private int catchUp(int position, int epoch) {
+        for (int i = epoch * 3; i < shifts.size(); i += 3) {
+            int start = shifts.get(i + 1);
+            int countOrTarget = shifts.get(i + 2);
+            switch (shifts.get(i)) {
+                case INSERTED:
+                    if (position >= start) {
+                        position += countOrTarget;
+                    }
+                    break;
+                case REMOVED:
+                    if (position >= start + countOrTarget) {
+                        position -= countOrTarget;
+                    } else if (position >= start) {
+                        return -1;
+                    }
+                    break;
+                case MOVED:
+                    if (position == start) {
+                        position = countOrTarget;
+                    } else if (start < countOrTarget && position > start
+                            && position <= countOrTarget) {
+                        position--;
+                    } else if (countOrTarget < start && position >= countOrTarget
+                            && position < start) {
+                        position++;
+                    }
+                    break;
+            }
+        }
+        return position;
+    }
+
+    private int epoch() {
+        return shifts.size() / 3;
+    }
+
+    private static int maxShifts(int size) {
+        return Math.max(MIN_SHIFTS, (int) Math.sqrt(size));
+    }
+
+    private void rebuild(LongList ids) {
+        int size = ids.size();
+        // power of two of at least twice the size keeps probe sequences short and
+        // guarantees an empty slot
+        int capacity = Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1;
+        if (keys.length != capacity) {
+            keys = new long[capacity];
+            positions = new int[capacity];
+            epochs = new int[capacity];
+        }
+        Arrays.fill(positions, EMPTY);
+        shifts.clear();
+        entries = 0;
+        for (int i = 0; i < size; i++) {
+            put(ids.get(i), i, 0);
+        }
+        valid = true;
+        list = ids;
+        listModCount = ids.modCount();
+        rebuildCount++;
+    }
+
+    private void put(long id, int position, int epoch) {
+        int mask = keys.length - 1;
+        int slot = hash(id) & mask;
+        while (positions[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = id;
+        positions[slot] = position;
+        epochs[slot] = epoch;
+        entries++;
+    }
+
+    /**
+     * Empties {@code slot}, moving later entries of its probe sequence back so that none
+     * of them is cut off from its home slot.
+     */
+    private void delete(int slot) {
+        int mask = keys.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; positions[next] != EMPTY; next = (next + 1) & mask) {
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                positions[hole] = positions[next];
+                epochs[hole] = epochs[next];
+                hole = next;
+            }
+        }
+        positions[hole] = EMPTY;
+        entries--;
+    }
+
+    private static int hash(long id) {
+        int h = (int) (id ^ (id >>> 32));
+        // spread sequential ids over the table
+        return h * 0x9E3779B9;
+    }
+}
@@ -0,0 +1,172 @@
+package examples.android.com.recyclerviewanimations;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints. Used as the adapter's backing store so that binding,
+ * inserting and removing items never boxes a value into an Integer. All range operations
+ * are done with a single System.arraycopy instead of element-by-element shifting.
+ */
+class IntList {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] data;
+    private int size;
+    private int modCount;
+
+    IntList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    IntList(int capacity) {
+        data = new int[Math.max(capacity, 1)];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Number of times this list has been modified. Lets callers that work on a copy
+     * (e.g. a background diff) detect that the list changed underneath them.
+     */
+    int modCount() {
+        return modCount;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int get(int index) {
+        checkIndex(index);
+        return data[index];
+    }
+
+    void set(int index, int value) {
+        checkIndex(index);
+        data[index] = value;
+        modCount++;
+    }
+
+    void add(int value) {
+        ensureCapacity(size + 1);
+        data[size++] = value;
+        modCount++;
+    }
+
+    void add(int index, int value) {
+        checkPositionIndex(index);
+        ensureCapacity(size + 1);
+        System.arraycopy(data, index, data, index + 1, size - index);
+        data[index] = value;
+        size++;
+        modCount++;
+    }
+
+    void addAll(int[] values) {
+        addAll(size, values, 0, values.length);
+    }
+
+    /**
+     * Inserts {@code count} values from {@code values}, starting at {@code offset}, at
+     * {@code index}. Existing items from {@code index} on are shifted once.
+     */
+    void addAll(int index, int[] values, int offset, int count) {
+        checkPositionIndex(index);
+        if (offset < 0 || count < 0 || count > values.length - offset) {
+            throw new IndexOutOfBoundsException("offset: " + offset + ", count: " + count
+                    + ", length: " + values.length);
+        }
+        ensureCapacity(size + count);
+        System.arraycopy(data, index, data, index + count, size - index);
+        System.arraycopy(values, offset, data, index, count);
+        size += count;
+        modCount++;
+    }
+
+    int remove(int index) {
+        checkIndex(index);
+        int value = data[index];
+        removeRange(index, 1);
+        return value;
+    }
+
+    void removeRange(int index, int count) {
+        if (index < 0 || count < 0 || count > size - index) {
+            throw new IndexOutOfBoundsException("index: " + index + ", count: " + count
+                    + ", size: " + size);
+        }
+        System.arraycopy(data, index + count, data, index, size - index - count);
+        size -= count;
+        modCount++;
+    }
+
+    /**
+     * Moves the value at {@code from} to {@code to}, shifting everything in between by
+     * one slot. Same result as swapping it step by step, but with one array copy.
+     */
+    void move(int from, int to) {
+        checkIndex(from);
+        checkIndex(to);
+        if (from == to) {
+            return;
+        }
+        int value = data[from];
+        if (from < to) {
+            System.arraycopy(data, from + 1, data, from, to - from);
+        } else {
+            System.arraycopy(data, to, data, to + 1, from - to);
+        }
+        data[to] = value;
+        modCount++;
+    }
+
+    void clear() {
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * Independent copy of this list, in one System.arraycopy.
+     */
+    IntList copy() {
+        IntList copy = new IntList(size);
+        System.arraycopy(data, 0, copy.data, 0, size);
+        copy.size = size;
+        return copy;
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+
+    /**
+     * Copy of the items from {@code from}, inclusive, to {@code to}, exclusive.
+     */
+    int[] toArray(int from, int to) {
+        if (from < 0 || from > to || to > size) {
+            throw new IndexOutOfBoundsException("from: " + from + ", to: " + to + ", size: " + size);
+        }
+        return Arrays.copyOfRange(data, from, to);
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > data.length) {
+            int newCapacity = Math.max(data.length + (data.length >> 1), minCapacity);
+            data = Arrays.copyOf(data, newCapacity);
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+    }
+
+    private void checkPositionIndex(int index) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+    }
+}
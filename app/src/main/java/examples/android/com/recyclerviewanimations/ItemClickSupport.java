@@ -1,7 +1,18 @@
 package examples.android.com.recyclerviewanimations;
 
+import android.os.Build;
+import android.os.Bundle;
+import android.support.v4.view.AccessibilityDelegateCompat;
+import android.support.v4.view.GestureDetectorCompat;
+import android.support.v4.view.MotionEventCompat;
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
 import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.RecyclerViewAccessibilityDelegate;
+import android.view.GestureDetector;
+import android.view.HapticFeedbackConstants;
+import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewConfiguration;
 
 /**
  * it may be useful to use this approach. in this case we can define click listener inside
@@ -10,50 +21,104 @@ import android.view.View;
  * new ItemClickSupport.OnItemClickListener() {
  * public void onItemClicked(RecyclerView recyclerView, int position, View v) {
  * // ...
+ * <p>
+ * Clicks are detected by one OnItemTouchListener on the RecyclerView, which hit-tests the
+ * tap against the children's bounds, so item views carry no listeners and nothing is set
+ * up when they are created, bound or attached. The tapped item is shown pressed, as a
+ * clickable view would be, and accessibility services such as TalkBack click items
+ * through the RecyclerView's item accessibility delegate, see {@link ClickableItemsDelegate}.
  */
 class ItemClickSupport {
     private final RecyclerView mRecyclerView;
     private OnItemClickListener mOnItemClickListener;
     private OnItemLongClickListener mOnItemLongClickListener;
-    private View.OnClickListener mOnClickListener = new View.OnClickListener() {
+    private final GestureDetectorCompat mGestureDetector;
+    // the item shown pressed by the gesture, if any
+    private View mPressedChild;
+    private final Runnable mUnsetPressedState = new Runnable() {
         @Override
-        public void onClick(View v) {
-            if (mOnItemClickListener != null) {
-                RecyclerView.ViewHolder holder = mRecyclerView.getChildViewHolder(v);
-                mOnItemClickListener.onItemClicked(mRecyclerView, holder.getAdapterPosition(), v);
-            }
+        public void run() {
+            releasePressedChild();
         }
     };
-    private View.OnLongClickListener mOnLongClickListener = new View.OnLongClickListener() {
+    private final RecyclerView.OnItemTouchListener mTouchListener = new RecyclerView.OnItemTouchListener() {
         @Override
-        public boolean onLongClick(View v) {
-            if (mOnItemLongClickListener != null) {
-                RecyclerView.ViewHolder holder = mRecyclerView.getChildViewHolder(v);
-                return mOnItemLongClickListener.onItemLongClicked(mRecyclerView, holder.getAdapterPosition(), v);
+        public boolean onInterceptTouchEvent(RecyclerView rv, MotionEvent e) {
+            int action = MotionEventCompat.getActionMasked(e);
+            if (action == MotionEvent.ACTION_DOWN) {
+                // e.g. left over from a drag, which took the rest of its gesture
+                releasePressedChild();
+            }
+            // only watches: scrolling, dragging and the children get the events as before
+            mGestureDetector.onTouchEvent(e);
+            if ((action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL)
+                    && mPressedChild != null) {
+                // long enough for the press of a quick tap to show
+                mRecyclerView.postDelayed(mUnsetPressedState,
+                        ViewConfiguration.getPressedStateDuration());
             }
             return false;
         }
-    };
-    private RecyclerView.OnChildAttachStateChangeListener mAttachListener = new RecyclerView.OnChildAttachStateChangeListener() {
+
         @Override
-        public void onChildViewAttachedToWindow(View view) {
-            if (mOnItemClickListener != null) {
-                view.setOnClickListener(mOnClickListener);
-            }
-            if (mOnItemLongClickListener != null) {
-                view.setOnLongClickListener(mOnLongClickListener);
-            }
+        public void onTouchEvent(RecyclerView rv, MotionEvent e) {
         }
 
         @Override
-        public void onChildViewDetachedFromWindow(View view) {
-
+        public void onRequestDisallowInterceptTouchEvent(boolean disallowIntercept) {
+            if (disallowIntercept) {
+                // the rest of the gesture will not come through here
+                cancelGesture();
+            }
+        }
+    };
+    private final RecyclerView.OnScrollListener mScrollListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+            if (newState == RecyclerView.SCROLL_STATE_DRAGGING) {
+                // a scroll, not a click; the RecyclerView has taken over the gesture
+                cancelGesture();
+            }
         }
     };
+
     private ItemClickSupport(RecyclerView recyclerView) {
         mRecyclerView = recyclerView;
+        mGestureDetector = new GestureDetectorCompat(recyclerView.getContext(),
+                new GestureDetector.SimpleOnGestureListener() {
+                    @Override
+                    public void onShowPress(MotionEvent e) {
+                        View child = mRecyclerView.findChildViewUnder(e.getX(), e.getY());
+                        if (child != null && mOnItemClickListener != null) {
+                            setPressedChild(child, e);
+                        }
+                    }
+
+                    @Override
+                    public boolean onSingleTapUp(MotionEvent e) {
+                        View child = mRecyclerView.findChildViewUnder(e.getX(), e.getY());
+                        if (child == null || !performItemClick(child)) {
+                            return false;
+                        }
+                        // a tap quicker than onShowPress() is shown pressed too
+                        setPressedChild(child, e);
+                        return true;
+                    }
+
+                    @Override
+                    public void onLongPress(MotionEvent e) {
+                        View child = mRecyclerView.findChildViewUnder(e.getX(), e.getY());
+                        if (child != null && performItemLongClick(child)) {
+                            child.performHapticFeedback(HapticFeedbackConstants.LONG_PRESS);
+                        }
+                    }
+                });
+        // without a long-click listener, a long press must not swallow the tap
+        mGestureDetector.setIsLongpressEnabled(false);
         mRecyclerView.setTag(R.id.item_click_support, this);
-        mRecyclerView.addOnChildAttachStateChangeListener(mAttachListener);
+        mRecyclerView.addOnItemTouchListener(mTouchListener);
+        mRecyclerView.addOnScrollListener(mScrollListener);
+        mRecyclerView.setAccessibilityDelegateCompat(new ClickableItemsDelegate(mRecyclerView));
     }
 
     public static ItemClickSupport addTo(RecyclerView view) {
@@ -79,14 +144,111 @@ class ItemClickSupport {
 
     public ItemClickSupport setOnItemLongClickListener(OnItemLongClickListener listener) {
         mOnItemLongClickListener = listener;
+        mGestureDetector.setIsLongpressEnabled(listener != null);
         return this;
     }
 
+    private boolean performItemClick(View child) {
+        int position = mRecyclerView.getChildAdapterPosition(child);
+        if (mOnItemClickListener == null || position == RecyclerView.NO_POSITION) {
+            return false;
+        }
+        mOnItemClickListener.onItemClicked(mRecyclerView, position, child);
+        return true;
+    }
+
+    private boolean performItemLongClick(View child) {
+        int position = mRecyclerView.getChildAdapterPosition(child);
+        return mOnItemLongClickListener != null && position != RecyclerView.NO_POSITION
+                && mOnItemLongClickListener.onItemLongClicked(mRecyclerView, position, child);
+    }
+
+    private void setPressedChild(View child, MotionEvent e) {
+        mRecyclerView.removeCallbacks(mUnsetPressedState);
+        if (child != mPressedChild) {
+            releasePressedChild();
+        }
+        mPressedChild = child;
+        if (Build.VERSION.SDK_INT >= 21) {
+            // where the ripple starts from
+            child.drawableHotspotChanged(e.getX() - child.getLeft() - child.getTranslationX(),
+                    e.getY() - child.getTop() - child.getTranslationY());
+        }
+        child.setPressed(true);
+    }
+
+    private void releasePressedChild() {
+        mRecyclerView.removeCallbacks(mUnsetPressedState);
+        if (mPressedChild != null) {
+            mPressedChild.setPressed(false);
+            mPressedChild = null;
+        }
+    }
+
+    private void cancelGesture() {
+        MotionEvent cancel = MotionEvent.obtain(0, 0, MotionEvent.ACTION_CANCEL, 0, 0, 0);
+        mGestureDetector.onTouchEvent(cancel);
+        cancel.recycle();
+        releasePressedChild();
+    }
+
     private void detach(RecyclerView view) {
-        view.removeOnChildAttachStateChangeListener(mAttachListener);
+        cancelGesture();
+        view.removeOnItemTouchListener(mTouchListener);
+        view.removeOnScrollListener(mScrollListener);
+        view.setAccessibilityDelegateCompat(new RecyclerViewAccessibilityDelegate(view));
+        // item views keep the item delegate they were given; it does nothing from now on
+        mOnItemClickListener = null;
+        mOnItemLongClickListener = null;
         view.setTag(R.id.item_click_support, null);
     }
 
+    /**
+     * Item views have no click listeners, so the click and long-click actions that
+     * accessibility services perform on them would do nothing. RecyclerView gives every
+     * item view the item delegate of its accessibility delegate; this one offers those
+     * actions and performs them through the listeners.
+     */
+    private class ClickableItemsDelegate extends RecyclerViewAccessibilityDelegate {
+        private final AccessibilityDelegateCompat mDefaultItemDelegate = super.getItemDelegate();
+        private final AccessibilityDelegateCompat mItemDelegate = new AccessibilityDelegateCompat() {
+            @Override
+            public void onInitializeAccessibilityNodeInfo(View host,
+                                                          AccessibilityNodeInfoCompat info) {
+                mDefaultItemDelegate.onInitializeAccessibilityNodeInfo(host, info);
+                if (mOnItemClickListener != null) {
+                    info.setClickable(true);
+                    info.addAction(AccessibilityNodeInfoCompat.ACTION_CLICK);
+                }
+                if (mOnItemLongClickListener != null) {
+                    info.setLongClickable(true);
+                    info.addAction(AccessibilityNodeInfoCompat.ACTION_LONG_CLICK);
+                }
+            }
+
+            @Override
+            public boolean performAccessibilityAction(View host, int action, Bundle args) {
+                if (action == AccessibilityNodeInfoCompat.ACTION_CLICK && performItemClick(host)) {
+                    return true;
+                }
+                if (action == AccessibilityNodeInfoCompat.ACTION_LONG_CLICK
+                        && performItemLongClick(host)) {
+                    return true;
+                }
+                return mDefaultItemDelegate.performAccessibilityAction(host, action, args);
+            }
+        };
+
+        ClickableItemsDelegate(RecyclerView recyclerView) {
+            super(recyclerView);
+        }
+
+        @Override
+        public AccessibilityDelegateCompat getItemDelegate() {
+            return mItemDelegate;
+        }
+    }
+
     interface OnItemClickListener {
         void onItemClicked(RecyclerView recyclerView, int position, View v);
     }
@@ -94,4 +256,4 @@ class ItemClickSupport {
     interface OnItemLongClickListener {
         boolean onItemLongClicked(RecyclerView recyclerView, int position, View v);
     }
-}
\ No newline at end of file
+}
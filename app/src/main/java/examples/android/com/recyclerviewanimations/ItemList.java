@@ -0,0 +1,1017 @@
+package examples.android.com.recyclerviewanimations;
+
+import android.support.v7.util.BatchingListUpdateCallback;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The items MyAdapter shows, each a color and a stable id, kept in two primitive lists at
+ * the same positions. Every edit, whether made here or through the
+ * {@link MutationPipeline}, is announced to the {@link Callback}: right away, or, between
+ * {@link #beginBatch()} and {@link #commit()}, merged first. Free of Android framework
+ * classes, so plain JVM tests can drive it, with executors of their own for the work it
+ * does in the background.
+ * <p>
+ * Main thread only, apart from the {@code post} methods.
+ */
+class ItemList {
+
+    /**
+     * Hears about the edits on the main thread.
+     */
+    interface Callback extends ListUpdateCallback {
+        /**
+         * The list has changed in too many places to go through them one by one.
+         */
+        void onDataSetChanged();
+
+        /**
+         * The attached store could not be opened, or a save to it failed. A failed save
+         * is tried again with the next one.
+         */
+        void onStoreFailed(IOException e);
+    }
+
+    // a pipeline batch with more notifications than this is shown as a data set change,
+    // which costs the main thread the same however much the batch did
+    private static final int MAX_BATCH_NOTIFICATIONS = 32;
+    // deferred dismissals that can be undone, most recent last
+    private static final int UNDO_CAPACITY = 16;
+    // id of a new item that has not been given one yet, see matchIds()
+    private static final long NO_ID = -1;
+
+    private final Callback callback;
+    private final Executor diffExecutor;
+    private final Executor storeExecutor;
+    private final Executor mainExecutor;
+
+    private IntList colors = new IntList();
+    // stable id of each item in colors, at the same position
+    private LongList ids = new LongList();
+    private final IdIndex idIndex = new IdIndex();
+    // ids are handed out on any thread, see postInsert()
+    private final AtomicLong nextId = new AtomicLong();
+    // colors and ids are edited in place on this thread, or replaced whole by batches from
+    // the pipeline. listVersion names their current contents; while listsShared, the
+    // pipeline's worker or the store may be reading them, and they are copied before the
+    // next edit. Lists lent to the store are not handed back to the pipeline either
+    private final MutationPipeline pipeline;
+    private int listVersion;
+    private boolean listsShared;
+    private boolean listsLent;
+    private volatile int submitGeneration;
+    // items dismissed by dismissDeferred() that are still in colors and ids; while there
+    // are any, positions go through them, see indexOf()
+    private final Tombstones dismissed = new Tombstones();
+    private final LongList undoIds = new LongList();
+    // index in colors and ids where the next chunk of a refresh goes, or -1 if there is
+    // no refresh, see beginRefresh(). Edits in front of it move it along with the items
+    private int refreshCursor = -1;
+    // where the list is saved to, if anywhere. storeGeneration changes with every
+    // attachStore() and detachStore(), so that a store that finishes opening after a
+    // newer call is closed again rather than attached
+    private ItemStore store;
+    private int storeGeneration;
+    // listVersion when attachStore() was last called, to tell whether the list has been
+    // edited while the store was being opened
+    private int attachVersion;
+    // batches built before this version were built on a list a store has since replaced,
+    // see installStore()
+    private int staleBatchVersion;
+    // edits of colors and ids since the last save(), unless the store is to be given the
+    // whole list instead
+    private ItemStore.Edits storeEdits = new ItemStore.Edits();
+    private boolean storeNeedsList;
+
+    // every change to colors is announced through updates, which passes it on: straight
+    // to the callback, or, between beginBatch() and commit(), merged into as few range
+    // notifications as possible first
+    private final BatchingListUpdateCallback batch;
+    private int batchDepth;
+    private final ListUpdateCallback updates = new ListUpdateCallback() {
+        @Override
+        public void onInserted(int position, int count) {
+            target().onInserted(position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            target().onRemoved(position, count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            target().onMoved(fromPosition, toPosition);
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            target().onChanged(position, count, payload);
+        }
+
+        private ListUpdateCallback target() {
+            return batchDepth > 0 ? batch : callback;
+        }
+    };
+
+    /**
+     * @param mutationExecutor runs the pipeline's worker, one task at a time
+     * @param diffExecutor     computes the diffs of {@link #submitColors}
+     * @param storeExecutor    writes to the attached store, one task at a time
+     * @param mainExecutor     runs what the other three hand back on this thread
+     */
+    ItemList(Callback callback, Executor mutationExecutor, Executor diffExecutor,
+             Executor storeExecutor, Executor mainExecutor) {
+        this.callback = callback;
+        this.diffExecutor = diffExecutor;
+        this.storeExecutor = storeExecutor;
+        this.mainExecutor = mainExecutor;
+        this.batch = new BatchingListUpdateCallback(callback);
+        this.pipeline = new MutationPipeline(mutationExecutor, mainExecutor,
+                new MutationPipeline.Callback() {
+                    @Override
+                    public void onBatch(MutationPipeline.Batch batch) {
+                        applyBatch(batch);
+                    }
+                });
+        shareLists();
+    }
+
+    /**
+     * Runs the mutation pipeline's worker on {@code executor}, which must run one task at
+     * a time, from the next batch on.
+     */
+    void setMutationExecutor(Executor executor) {
+        pipeline.setExecutor(executor);
+    }
+
+    /**
+     * Number of times the mutation pipeline's worker has copied the list, for tests.
+     */
+    int pipelineCopyCount() {
+        return pipeline.copyCount();
+    }
+
+    int size() {
+        return colors.size() - dismissed.count();
+    }
+
+    int colorAt(int position) {
+        return colors.get(indexOf(position));
+    }
+
+    long idAt(int position) {
+        return ids.get(indexOf(position));
+    }
+
+    /**
+     * Position of the item with stable id {@code id}, or -1 if it is not in the list.
+     */
+    int positionOf(long id) {
+        int index = idIndex.positionOf(id, ids);
+        if (index < 0 || (!dismissed.isEmpty() && dismissed.contains(index))) {
+            return -1;
+        }
+        return dismissed.isEmpty() ? index : dismissed.liveRank(index);
+    }
+
+    /**
+     * Index in colors and ids of the item at position {@code position}.
+     */
+    private int indexOf(int position) {
+        return dismissed.isEmpty() ? position : dismissed.liveIndex(position);
+    }
+
+    /**
+     * Keeps the list in the {@link ItemStore} in {@code file} from now on. The store is
+     * opened and read on the store executor, after any saves still pending there, e.g.
+     * from the list of an activity being recreated. Meant to be called on a new, empty
+     * list, before it is shown: the list stays as it is until the store is read, and then
+     * becomes the stored list, or {@code initialColors} if nothing is stored yet.
+     * <p>
+     * If the list has been edited in the meantime, those edits win: the list stays as it
+     * is and replaces the stored one on the next {@link #save()}. A list that was filled
+     * before this call is replaced by the stored list, whose items are then given new
+     * ids, so that no id names one item before and another after; edits still on their
+     * way through the pipeline are dropped. A store that cannot be read is reported to
+     * the callback. A corrupt one is replaced by a new one; any other failure leaves the
+     * files alone, for the next attach to try again, and the list is not kept until then.
+     */
+    void attachStore(final File file, final int[] initialColors) {
+        final int generation = ++storeGeneration;
+        attachVersion = listVersion;
+        storeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                ItemStore opened;
+                try {
+                    opened = ItemStore.open(file);
+                } catch (ItemStore.CorruptException e) {
+                    reportStoreFailure(e);
+                    ItemStore.delete(file);
+                    try {
+                        opened = ItemStore.open(file);
+                    } catch (IOException e2) {
+                        reportStoreFailure(e2);
+                        showInitialColors(generation, initialColors);
+                        return;
+                    }
+                } catch (IOException e) {
+                    // e.g. out of memory to map it, or of disk space: the files may be fine
+                    reportStoreFailure(e);
+                    showInitialColors(generation, initialColors);
+                    return;
+                }
+                final ItemStore store = opened;
+                // the main thread gets lists of its own, copied here
+                final IntList storedColors = store.copyColors();
+                final LongList storedIds = store.copyIds();
+                mainExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != storeGeneration) {
+                            closeStore(store);
+                            return;
+                        }
+                        installStore(store, storedColors, storedIds, initialColors);
+                    }
+                });
+            }
+        });
+    }
+
+    private void showInitialColors(final int generation, final int[] initialColors) {
+        mainExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (generation == storeGeneration && listVersion == attachVersion
+                        && colors.isEmpty()) {
+                    addAll(initialColors);
+                }
+            }
+        });
+    }
+
+    private void installStore(ItemStore store, IntList storedColors, LongList storedIds,
+                              int[] initialColors) {
+        this.store = store;
+        storeEdits.clear();
+        // every list that was ever saved has handed out ids, even if it is empty now
+        if (store.nextId() == 0 || listVersion != attachVersion) {
+            nextId.set(Math.max(nextId.get(), store.nextId()));
+            storeNeedsList = true;
+            if (listVersion == attachVersion && colors.isEmpty()) {
+                addAll(initialColors);
+            }
+            return;
+        }
+        storeNeedsList = false;
+        if (nextId.get() > 0) {
+            // ids of the list being replaced may still be held elsewhere, e.g. by the
+            // pipeline, and the stored ones start from 0 as well
+            for (int i = 0; i < storedIds.size(); i++) {
+                storedIds.set(i, nextId.getAndIncrement());
+            }
+            storeNeedsList = true;
+        } else {
+            nextId.set(store.nextId());
+        }
+        staleBatchVersion = pipeline.discardPending();
+        int oldSize = size();
+        dismissed.reset(0);
+        undoIds.clear();
+        colors = storedColors;
+        ids = storedIds;
+        refreshCursor = Math.min(refreshCursor, colors.size());
+        listVersion = pipeline.newVersion();
+        shareLists();
+        listsLent = false;
+        if (oldSize == 0) {
+            if (!colors.isEmpty()) {
+                updates.onInserted(0, colors.size());
+            }
+        } else {
+            callback.onDataSetChanged();
+        }
+    }
+
+    /**
+     * Saves the edits since the last save to the attached store, on the store executor.
+     * Costs the main thread nothing more than handing them over, and the store a write
+     * that follows the size of the edits rather than of the list.
+     */
+    void save() {
+        // dismissals cannot be undone once the app is left
+        compactDismissed(false);
+        if (store == null) {
+            return;
+        }
+        final ItemStore target = store;
+        final long savedNextId = nextId.get();
+        if (storeNeedsList) {
+            final IntList savedColors = colors;
+            final LongList savedIds = ids;
+            // lent to the store until it has copied them, see listsShared
+            listsShared = true;
+            listsLent = true;
+            storeNeedsList = false;
+            storeEdits.clear();
+            storeExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        target.replace(savedColors, savedIds, savedNextId);
+                    } catch (IOException e) {
+                        reportStoreFailure(e);
+                    }
+                }
+            });
+        } else if (!storeEdits.isEmpty()) {
+            final ItemStore.Edits edits = storeEdits;
+            storeEdits = new ItemStore.Edits();
+            storeExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        // kept by the store and written again next time if this fails
+                        target.append(edits, savedNextId);
+                    } catch (IOException e) {
+                        reportStoreFailure(e);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Saves the list and stops keeping it in the attached store, which is handed back
+     * for the caller to close once the save is done, on the store executor. Returns null
+     * if no store is attached; one that is still being opened is closed once it is.
+     */
+    ItemStore detachStore() {
+        storeGeneration++;
+        if (store == null) {
+            return null;
+        }
+        save();
+        ItemStore detached = store;
+        store = null;
+        return detached;
+    }
+
+    private void closeStore(final ItemStore store) {
+        storeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    store.close();
+                } catch (IOException e) {
+                    reportStoreFailure(e);
+                }
+            }
+        });
+    }
+
+    private void reportStoreFailure(final IOException e) {
+        mainExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                callback.onStoreFailed(e);
+            }
+        });
+    }
+
+    /**
+     * The edits to record the next change of colors and ids in for the store, or null if
+     * there is no need to.
+     */
+    private ItemStore.Edits storeEdits() {
+        return store == null || storeNeedsList ? null : storeEdits;
+    }
+
+    /**
+     * Makes the next save give the store the whole list, rather than the edits since the
+     * last one.
+     */
+    private void rewriteStore() {
+        storeNeedsList = store != null;
+        storeEdits.clear();
+    }
+
+    /**
+     * Starts a batch of edits. Until the matching {@link #commit()}, the notifications of
+     * all edits are held back and adjacent ones merged, e.g. removing the items at 5, 5
+     * and 4 becomes one removal of 4..6, so that a burst of edits reaches the RecyclerView
+     * as a few range notifications. Each notification is still given in terms of the
+     * positions at the time of its edit, so interleaved edits need no rebasing. Batches
+     * may be nested; only the outermost commit dispatches.
+     */
+    void beginBatch() {
+        batchDepth++;
+    }
+
+    /**
+     * Ends the batch started by the matching {@link #beginBatch()}. The merged
+     * notifications are dispatched right away rather than deferred, so the RecyclerView
+     * never lays out against a list it has not been told about. It folds everything it
+     * has been notified of before its next frame into a single layout pass.
+     */
+    void commit() {
+        if (batchDepth == 0) {
+            throw new IllegalStateException("commit() without beginBatch()");
+        }
+        if (--batchDepth == 0) {
+            batch.dispatchLastEvent();
+        }
+    }
+
+    /**
+     * Must come before every edit of colors and ids on this thread.
+     */
+    private void beginEdit() {
+        if (listsShared) {
+            // copy on write: the pipeline's worker may be reading these
+            colors = colors.copy();
+            LongList shared = ids;
+            ids = ids.copy();
+            idIndex.onCopied(shared, ids);
+            listsShared = false;
+            listsLent = false;
+        }
+        listVersion = pipeline.newVersion();
+    }
+
+    /**
+     * Hands the current lists to the pipeline to build its next batch on.
+     */
+    private void shareLists() {
+        pipeline.rebase(colors, ids, listVersion);
+        listsShared = true;
+    }
+
+    // Edits take positions among the items that are not dismissed, and leave the
+    // dismissed ones where they are, so that those can still be undone. Only the bulk
+    // edits, which replace most of the list, remove the dismissed items for good first.
+
+    /**
+     * Removes all items, including dismissed ones.
+     */
+    void clear() {
+        beginEdit();
+        int count = size();
+        int physicalCount = colors.size();
+        colors.clear();
+        ids.clear();
+        idIndex.onRemoved(ids, 0, physicalCount);
+        ItemStore.Edits edits = storeEdits();
+        if (edits != null) {
+            edits.removed(0, physicalCount);
+        }
+        refreshRemoved(0, physicalCount);
+        dismissed.reset(0);
+        undoIds.clear();
+        updates.onRemoved(0, count);
+    }
+
+    void addAll(int[] colors) {
+        beginEdit();
+        int position = size();
+        int start = this.colors.size();
+        this.colors.addAll(colors);
+        for (int i = 0; i < colors.length; i++) {
+            ids.add(nextId.getAndIncrement());
+        }
+        idIndex.onInserted(ids, start, colors.length);
+        ItemStore.Edits edits = storeEdits();
+        if (edits != null) {
+            edits.inserted(start, ids, this.colors, colors.length);
+        }
+        refreshInserted(start, colors.length);
+        if (!dismissed.isEmpty()) {
+            dismissed.splice(start, 0, colors.length);
+        }
+        updates.onInserted(position, colors.length);
+    }
+
+    void insertItem(int position, int color) {
+        beginEdit();
+        insert(position, nextId.getAndIncrement(), color);
+    }
+
+    void removeItem(int position) {
+        beginEdit();
+        remove(position);
+    }
+
+    void setItem(int position, int color) {
+        beginEdit();
+        set(position, color);
+    }
+
+    void moveItem(int fromPosition, int toPosition) {
+        beginEdit();
+        // to where the item at toPosition is, which puts it on the same side of that item
+        // as a move between positions would
+        int from = indexOf(fromPosition);
+        int to = indexOf(toPosition);
+        // a single shift of the items in between, however far the item was moved
+        colors.move(from, to);
+        ids.move(from, to);
+        idIndex.onMoved(ids, from, to);
+        ItemStore.Edits edits = storeEdits();
+        if (edits != null) {
+            edits.moved(from, to);
+        }
+        if (from != to) {
+            refreshRemoved(from, 1);
+            refreshInserted(to, 1);
+        }
+        if (!dismissed.isEmpty()) {
+            dismissed.move(from, to);
+        }
+        updates.onMoved(fromPosition, toPosition);
+    }
+
+    private void insert(int position, long id, int color) {
+        // in front of the item at position, or at the very end
+        int index = position == size() ? colors.size() : indexOf(position);
+        colors.add(index, color);
+        ids.add(index, id);
+        idIndex.onInserted(ids, index, 1);
+        ItemStore.Edits edits = storeEdits();
+        if (edits != null) {
+            edits.inserted(index, id, color);
+        }
+        refreshInserted(index, 1);
+        if (!dismissed.isEmpty()) {
+            dismissed.splice(index, 0, 1);
+        }
+        updates.onInserted(position, 1);
+    }
+
+    private void remove(int position) {
+        int index = indexOf(position);
+        colors.remove(index);
+        ids.remove(index);
+        idIndex.onRemoved(ids, index, 1);
+        ItemStore.Edits edits = storeEdits();
+        if (edits != null) {
+            edits.removed(index, 1);
+        }
+        refreshRemoved(index, 1);
+        if (!dismissed.isEmpty()) {
+            dismissed.splice(index, 1, 0);
+        }
+        updates.onRemoved(position, 1);
+    }
+
+    private void set(int position, int color) {
+        int index = indexOf(position);
+        colors.set(index, color);
+        ItemStore.Edits edits = storeEdits();
+        if (edits != null) {
+            edits.changed(index, color);
+        }
+        // the label shows the color value, so both change
+        updates.onChanged(position, 1, ItemPayload.COLOR_AND_TEXT);
+    }
+
+    /**
+     * Starts laying a new list over this one, chunk by chunk, see
+     * {@link #mergeRefreshChunk}, in place of any refresh that has not finished.
+     */
+    void beginRefresh() {
+        refreshCursor = 0;
+    }
+
+    /**
+     * Lays {@code chunk} over the list where the refresh has got to. Items already there
+     * keep their ids and take the new colors, and each run of changed ones is announced
+     * as one range; the rest of the chunk is appended. Items whose color stays the same
+     * are not rebound. Items inserted, removed or moved since the last chunk are allowed
+     * for: the chunk goes right after the items the refresh has already reached, and an
+     * item inserted there is kept rather than overwritten. Dismissed items are removed
+     * for good first.
+     *
+     * @throws IllegalStateException if no refresh was begun
+     */
+    void mergeRefreshChunk(int[] chunk) {
+        if (refreshCursor < 0) {
+            throw new IllegalStateException("mergeRefreshChunk() without beginRefresh()");
+        }
+        compactDismissed(false);
+        beginEdit();
+        int size = colors.size();
+        // the cursor is kept within the list, but a chunk must never be laid past its end
+        int offset = Math.min(refreshCursor, size);
+        refreshCursor = offset + chunk.length;
+        ItemStore.Edits edits = storeEdits();
+        int overlap = Math.min(chunk.length, size - offset);
+        int runStart = -1;
+        for (int i = 0; i < overlap; i++) {
+            if (colors.get(offset + i) != chunk[i]) {
+                colors.set(offset + i, chunk[i]);
+                if (edits != null) {
+                    edits.changed(offset + i, chunk[i]);
+                }
+                if (runStart < 0) {
+                    runStart = i;
+                }
+            } else if (runStart >= 0) {
+                // the label shows the color value, so both change
+                updates.onChanged(offset + runStart, i - runStart, ItemPayload.COLOR_AND_TEXT);
+                runStart = -1;
+            }
+        }
+        if (runStart >= 0) {
+            updates.onChanged(offset + runStart, overlap - runStart, ItemPayload.COLOR_AND_TEXT);
+        }
+        int appended = chunk.length - overlap;
+        if (appended > 0) {
+            colors.addAll(size, chunk, overlap, appended);
+            for (int i = 0; i < appended; i++) {
+                ids.add(nextId.getAndIncrement());
+            }
+            idIndex.onInserted(ids, size, appended);
+            if (edits != null) {
+                edits.inserted(size, ids, colors, appended);
+            }
+            updates.onInserted(size, appended);
+        }
+    }
+
+    /**
+     * Ends the refresh, removing the items after the last one it reached, if there are
+     * any. Dismissed items are removed for good first.
+     *
+     * @throws IllegalStateException if no refresh was begun
+     */
+    void finishRefresh() {
+        if (refreshCursor < 0) {
+            throw new IllegalStateException("finishRefresh() without beginRefresh()");
+        }
+        compactDismissed(false);
+        int size = Math.min(refreshCursor, colors.size());
+        refreshCursor = -1;
+        int count = colors.size() - size;
+        if (count > 0) {
+            beginEdit();
+            colors.removeRange(size, count);
+            ids.removeRange(size, count);
+            idIndex.onRemoved(ids, size, count);
+            ItemStore.Edits edits = storeEdits();
+            if (edits != null) {
+                edits.removed(size, count);
+            }
+            updates.onRemoved(size, count);
+        }
+    }
+
+    /**
+     * Ends the refresh where it is: the items it has merged stay, and so do the old ones
+     * after them.
+     */
+    void abandonRefresh() {
+        refreshCursor = -1;
+    }
+
+    private void refreshInserted(int index, int count) {
+        // an item inserted right at the cursor is ahead of the refresh, and kept
+        if (refreshCursor >= index) {
+            refreshCursor += count;
+        }
+    }
+
+    private void refreshRemoved(int index, int count) {
+        if (refreshCursor > index) {
+            refreshCursor = Math.max(index, refreshCursor - count);
+        }
+    }
+
+    /**
+     * Inserts an item with {@code color} where the item with id {@code beforeId} is, if it
+     * is still there when the edit is applied. Like {@link #postRemove} and
+     * {@link #postSet}, this may be called on any thread: the edit goes through the
+     * {@link MutationPipeline} and reaches the list, and the callback, a little later on
+     * the main thread.
+     */
+    void postInsert(long beforeId, int color) {
+        pipeline.insert(beforeId, nextId.getAndIncrement(), color);
+    }
+
+    /**
+     * Removes the item with id {@code id}, if it is still there; see {@link #postInsert}.
+     */
+    void postRemove(long id) {
+        pipeline.remove(id);
+    }
+
+    /**
+     * Gives the item with id {@code id} the color {@code color}, if it is still there; see
+     * {@link #postInsert}.
+     */
+    void postSet(long id, int color) {
+        pipeline.set(id, color);
+    }
+
+    private void applyBatch(MutationPipeline.Batch batch) {
+        if (batch.version < staleBatchVersion) {
+            // built on a list that has since been replaced by a stored one
+            return;
+        }
+        // the batch's positions count the dismissed items too, so with any of those the
+        // batch is replayed below, as it is during a refresh, whose cursor follows edits
+        // one by one
+        if (batch.baseVersion == listVersion && dismissed.isEmpty() && refreshCursor < 0) {
+            // nothing has touched the list since the batch was built on it, so the
+            // batch's copy simply replaces it
+            batch.dispatchShiftsTo(idIndex);
+            ItemStore.Edits edits = storeEdits();
+            if (edits != null) {
+                batch.dispatchEditsTo(edits);
+            }
+            if (listsShared && !listsLent) {
+                // nothing refers to the replaced lists any more; the worker can build a
+                // later batch in them instead of copying its own
+                pipeline.recycle(colors, ids, listVersion);
+            }
+            colors = batch.colors;
+            ids = batch.ids;
+            listVersion = batch.version;
+            listsShared = true;
+            listsLent = false;
+            if (batch.notificationCount() > MAX_BATCH_NOTIFICATIONS && batchDepth == 0) {
+                callback.onDataSetChanged();
+            } else {
+                batch.dispatchUpdatesTo(updates);
+            }
+            return;
+        }
+        // the list was edited here in the meantime; apply the batch's mutations to what is
+        // here now, then let the worker catch up
+        beginEdit();
+        for (MutationPipeline.Mutation mutation : batch.mutations) {
+            int position = positionOf(mutation.id);
+            if (position < 0) {
+                // gone, or dismissed
+                continue;
+            }
+            switch (mutation.type) {
+                case MutationPipeline.INSERT:
+                    insert(position, mutation.newId, mutation.color);
+                    break;
+                case MutationPipeline.REMOVE:
+                    remove(position);
+                    break;
+                case MutationPipeline.SET:
+                    set(position, mutation.color);
+                    break;
+            }
+        }
+        shareLists();
+    }
+
+    /**
+     * Replaces the whole list with {@code newColors}. The diff against the current list is
+     * computed on the diff executor and only the resulting granular insert/remove/move/
+     * change notifications are sent, so bound holders and change animations survive.
+     * Items of the current list keep their ids: each new color takes over the id of an
+     * unclaimed current item with the same color, if there is one, and only the rest get
+     * new ids. A newer call supersedes any diff that has not been applied yet. Dismissed
+     * items are removed for good first.
+     */
+    void submitColors(final int[] newColors) {
+        compactDismissed(false);
+        final int generation = ++submitGeneration;
+        final int[] oldColors = colors.toArray();
+        final long[] oldIds = ids.toArray();
+        final int version = listVersion;
+        diffExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != submitGeneration) {
+                    // a newer list arrived while this one was queued
+                    return;
+                }
+                final long[] newIds = matchIds(oldIds, oldColors, newColors);
+                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(
+                        new ItemDiffCallback(oldIds, newIds, oldColors, newColors));
+                mainExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != submitGeneration) {
+                            return;
+                        }
+                        if (version != listVersion) {
+                            // the list was edited while we were diffing; start over
+                            // against what is there now
+                            submitColors(newColors);
+                            return;
+                        }
+                        for (int i = 0; i < newIds.length; i++) {
+                            if (newIds[i] == NO_ID) {
+                                newIds[i] = nextId.getAndIncrement();
+                            }
+                        }
+                        // new lists rather than edits, so the worker's are never touched
+                        colors = new IntList(newColors.length);
+                        colors.addAll(newColors);
+                        ids = new LongList(newIds.length);
+                        ids.addAll(newIds);
+                        listsShared = false;
+                        listsLent = false;
+                        listVersion = pipeline.newVersion();
+                        refreshCursor = Math.min(refreshCursor, colors.size());
+                        rewriteStore();
+                        result.dispatchUpdatesTo(updates);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Hides the item at {@code position} at once, but only marks it, so that
+     * {@link #undoDismiss()} can bring it back until {@link #compactDismissed} removes
+     * it for good.
+     */
+    void dismissDeferred(int position) {
+        // only marks the item; nothing is shifted until compactDismissed()
+        if (dismissed.isEmpty()) {
+            dismissed.reset(colors.size());
+        }
+        int index = dismissed.liveIndex(position);
+        dismissed.add(index);
+        undoIds.add(ids.get(index));
+        if (undoIds.size() > UNDO_CAPACITY) {
+            // the oldest one can no longer be undone; it goes with the next compaction
+            undoIds.remove(0);
+        }
+        // colors and ids stay as they are, but positions have changed: a diff or batch
+        // computed before this no longer fits
+        listVersion = pipeline.newVersion();
+        updates.onRemoved(position, 1);
+    }
+
+    /**
+     * Brings back the most recent deferred dismissal that can still be undone.
+     *
+     * @return whether there was one
+     */
+    boolean undoDismiss() {
+        while (!undoIds.isEmpty()) {
+            long id = undoIds.remove(undoIds.size() - 1);
+            int index = idIndex.positionOf(id, ids);
+            if (index >= 0 && !dismissed.isEmpty() && dismissed.contains(index)) {
+                dismissed.remove(index);
+                listVersion = pipeline.newVersion();
+                updates.onInserted(dismissed.isEmpty() ? index : dismissed.liveRank(index), 1);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes the items dismissed by {@link #dismissDeferred} from colors and ids in one
+     * pass. The callback already treats them as gone, so it is not notified. With
+     * {@code keepUndoable}, the items that can still be undone stay, dismissed.
+     */
+    void compactDismissed(boolean keepUndoable) {
+        if (dismissed.isEmpty()) {
+            undoIds.clear();
+            return;
+        }
+        beginEdit();
+        ItemStore.Edits edits = storeEdits();
+        int size = colors.size();
+        int kept = 0;
+        // new indices of the dismissed items that stay
+        IntList keptIndices = new IntList();
+        for (int read = 0; read < size; read++) {
+            if (dismissed.contains(read)) {
+                if (!keepUndoable || !isUndoable(ids.get(read))) {
+                    if (edits != null) {
+                        // where it is once those before it are gone; neighbours merge
+                        edits.removed(kept, 1);
+                    }
+                    refreshRemoved(kept, 1);
+                    continue;
+                }
+                keptIndices.add(kept);
+            }
+            if (kept != read) {
+                colors.set(kept, colors.get(read));
+                ids.set(kept, ids.get(read));
+            }
+            kept++;
+        }
+        colors.removeRange(kept, size - kept);
+        ids.removeRange(kept, size - kept);
+        dismissed.reset(kept);
+        for (int i = 0; i < keptIndices.size(); i++) {
+            dismissed.add(keptIndices.get(i));
+        }
+        if (dismissed.isEmpty()) {
+            undoIds.clear();
+        }
+    }
+
+    private boolean isUndoable(long id) {
+        for (int i = 0; i < undoIds.size(); i++) {
+            if (undoIds.get(i) == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * For each of {@code newColors}, the id of a not yet claimed old item with the same
+     * color, or {@link #NO_ID}. Duplicate colors are matched up in order.
+     */
+    private static long[] matchIds(long[] oldIds, int[] oldColors, int[] newColors) {
+        // old items sorted by color, then position: color in the high half, position in
+        // the low half
+        long[] byColor = new long[oldColors.length];
+        for (int i = 0; i < oldColors.length; i++) {
+            byColor[i] = (long) oldColors[i] << 32 | i;
+        }
+        Arrays.sort(byColor);
+        // claimed[k]: how many old items of the run of equal colors starting at k are taken
+        int[] claimed = new int[byColor.length];
+        long[] newIds = new long[newColors.length];
+        for (int i = 0; i < newColors.length; i++) {
+            newIds[i] = NO_ID;
+            int runStart = lowerBound(byColor, (long) newColors[i] << 32);
+            if (runStart == byColor.length) {
+                continue;
+            }
+            int candidate = runStart + claimed[runStart];
+            if (candidate < byColor.length
+                    && (int) (byColor[candidate] >> 32) == newColors[i]) {
+                claimed[runStart]++;
+                newIds[i] = oldIds[(int) byColor[candidate]];
+            }
+        }
+        return newIds;
+    }
+
+    /**
+     * Index of the first value in sorted {@code values} that is not less than {@code key}.
+     */
+    private static int lowerBound(long[] values, long key) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static class ItemDiffCallback extends DiffUtil.Callback {
+        private final long[] oldIds;
+        private final long[] newIds;
+        private final int[] oldColors;
+        private final int[] newColors;
+
+        ItemDiffCallback(long[] oldIds, long[] newIds, int[] oldColors, int[] newColors) {
+            this.oldIds = oldIds;
+            this.newIds = newIds;
+            this.oldColors = oldColors;
+            this.newColors = newColors;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldIds.length;
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newIds.length;
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            // new items have no id yet, and never match
+            return oldIds[oldItemPosition] == newIds[newItemPosition];
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return oldColors[oldItemPosition] == newColors[newItemPosition];
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package examples.android.com.recyclerviewanimations;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Counters and latency histograms for the adapter and the change animator: how long
+ * creating and binding holders and starting change animations take, how change
+ * animations start, get interrupted and get ended early, how many run at once, how
+ * much per-frame work they cause, and how often a bound holder came out of the
+ * RecycledViewPool rather than being created.
+ * <p>
+ * Recording is off by default and can be switched on and off at any time; while off,
+ * each recording call is a single field check. Recording and {@link #snapshot()} must
+ * happen on the main thread.
+ */
+class ItemMetrics {
+
+    private volatile boolean enabled;
+
+    private final Histogram createLatency = new Histogram();
+    private final Histogram bindLatency = new Histogram();
+    private final Histogram animateChangeLatency = new Histogram();
+    private long animationStarts;
+    private long animationInterrupts;
+    private long animationCancels;
+    private int runningAnimations;
+    private long animationFrames;
+    private long animationUpdates;
+    private int runningAnimationsHighWater;
+    private long poolHits;
+    private long poolMisses;
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Current time to pass to the {@code record...Latency} methods, or 0 when disabled.
+     */
+    long startTiming() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    void recordCreateLatency(long startNanos) {
+        if (enabled && startNanos != 0) {
+            createLatency.record(System.nanoTime() - startNanos);
+        }
+    }
+
+    void recordBindLatency(long startNanos) {
+        if (enabled && startNanos != 0) {
+            bindLatency.record(System.nanoTime() - startNanos);
+        }
+    }
+
+    void recordAnimateChangeLatency(long startNanos) {
+        if (enabled && startNanos != 0) {
+            animateChangeLatency.record(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * A holder is being bound from scratch; {@code reused} tells whether it came out of
+     * the RecycledViewPool.
+     */
+    void recordFullBind(boolean reused) {
+        if (enabled) {
+            if (reused) {
+                poolHits++;
+            } else {
+                poolMisses++;
+            }
+        }
+    }
+
+    /**
+     * A change animation has started; {@code interrupting} if it took over from one that
+     * was still running on the same item.
+     */
+    void recordAnimationStart(boolean interrupting) {
+        if (enabled) {
+            animationStarts++;
+            if (interrupting) {
+                animationInterrupts++;
+            }
+        }
+        // the number running is tracked even while disabled so it stays right when
+        // recording is switched on in the middle of an animation
+        runningAnimations++;
+        if (enabled && runningAnimations > runningAnimationsHighWater) {
+            runningAnimationsHighWater = runningAnimations;
+        }
+    }
+
+    /**
+     * A change animation has finished, however it ended.
+     */
+    void recordAnimationFinish() {
+        if (runningAnimations > 0) {
+            runningAnimations--;
+        }
+    }
+
+    /**
+     * {@code count} change animations were ended before running to their end, other than
+     * by being interrupted.
+     */
+    void recordAnimationCancels(int count) {
+        if (enabled) {
+            animationCancels += count;
+        }
+    }
+
+    /**
+     * The change animations ticked a frame, advancing {@code animating} of them.
+     */
+    void recordAnimationFrame(int animating) {
+        if (enabled) {
+            animationFrames++;
+            animationUpdates += animating;
+        }
+    }
+
+    /**
+     * Clears everything recorded so far, except the number of running animations.
+     */
+    void reset() {
+        createLatency.reset();
+        bindLatency.reset();
+        animateChangeLatency.reset();
+        animationStarts = animationInterrupts = animationCancels = 0;
+        animationFrames = animationUpdates = 0;
+        runningAnimationsHighWater = runningAnimations;
+        poolHits = poolMisses = 0;
+    }
+
+    Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Immutable copy of the metrics at one point in time.
+     */
+    static class Snapshot {
+        final Histogram.Summary create;
+        final Histogram.Summary bind;
+        final Histogram.Summary animateChange;
+        final long animationStarts;
+        final long animationInterrupts;
+        final long animationCancels;
+        final int runningAnimations;
+        final int runningAnimationsHighWater;
+        final long animationFrames;
+        final long animationUpdates;
+        final long poolHits;
+        final long poolMisses;
+
+        private Snapshot(ItemMetrics metrics) {
+            create = metrics.createLatency.summary();
+            bind = metrics.bindLatency.summary();
+            animateChange = metrics.animateChangeLatency.summary();
+            animationStarts = metrics.animationStarts;
+            animationInterrupts = metrics.animationInterrupts;
+            animationCancels = metrics.animationCancels;
+            runningAnimations = metrics.runningAnimations;
+            runningAnimationsHighWater = metrics.runningAnimationsHighWater;
+            animationFrames = metrics.animationFrames;
+            animationUpdates = metrics.animationUpdates;
+            poolHits = metrics.poolHits;
+            poolMisses = metrics.poolMisses;
+        }
+
+        /**
+         * Share of full binds whose holder came from the RecycledViewPool, or NaN if
+         * nothing has been bound.
+         */
+        float poolHitRate() {
+            long total = poolHits + poolMisses;
+            return total == 0 ? Float.NaN : (float) poolHits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "create: %s%nbind: %s%nanimateChange: %s%n"
+                            + "animations: %d started, %d interrupted, %d cancelled, "
+                            + "%d running, %d max running, %d item updates in %d frames%n"
+                            + "pool hit rate: %.3f (%d/%d)",
+                    create, bind, animateChange,
+                    animationStarts, animationInterrupts, animationCancels,
+                    runningAnimations, runningAnimationsHighWater,
+                    animationUpdates, animationFrames,
+                    poolHitRate(), poolHits, poolHits + poolMisses);
+        }
+    }
+
+    /**
+     * Latency histogram with power-of-two microsecond buckets: bucket 0 counts values
+     * under 1us, bucket i values in [2^(i-1), 2^i) us, the last bucket everything above.
+     */
+    static class Histogram {
+        static final int BUCKETS = 20;
+
+        private final long[] counts = new long[BUCKETS];
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        void record(long nanos) {
+            long micros = nanos / 1000;
+            int bucket = micros == 0 ? 0 : 64 - Long.numberOfLeadingZeros(micros);
+            counts[Math.min(bucket, BUCKETS - 1)]++;
+            count++;
+            totalNanos += nanos;
+            if (nanos > maxNanos) {
+                maxNanos = nanos;
+            }
+        }
+
+        void reset() {
+            Arrays.fill(counts, 0);
+            count = totalNanos = maxNanos = 0;
+        }
+
+        Summary summary() {
+            return new Summary(counts.clone(), count, totalNanos, maxNanos);
+        }
+
+        static class Summary {
+            final long[] counts;
+            final long count;
+            final long totalNanos;
+            final long maxNanos;
+
+            Summary(long[] counts, long count, long totalNanos, long maxNanos) {
+                this.counts = counts;
+                this.count = count;
+                this.totalNanos = totalNanos;
+                this.maxNanos = maxNanos;
+            }
+
+            /**
+             * Upper bound, in microseconds, of the bucket holding the given percentile.
+             */
+            long percentileMicros(float percentile) {
+                long rank = (long) Math.ceil(count * percentile / 100);
+                long seen = 0;
+                for (int i = 0; i < counts.length; i++) {
+                    seen += counts[i];
+                    if (seen >= rank && seen > 0) {
+                        return 1L << i;
+                    }
+                }
+                return 0;
+            }
+
+            @Override
+            public String toString() {
+                return String.format(Locale.US, "n=%d mean=%dus p50<%dus p99<%dus max=%dus",
+                        count, count == 0 ? 0 : totalNanos / count / 1000,
+                        percentileMicros(50), percentileMicros(99), maxNanos / 1000);
+            }
+        }
+    }
+}
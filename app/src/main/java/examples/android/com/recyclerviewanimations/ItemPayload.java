@@ -0,0 +1,77 @@
+package examples.android.com.recyclerviewanimations;
+
+import java.util.List;
+
+/**
+ * Typed payloads passed along with item change notifications. They tell
+ * {@link MyAdapter#onBindViewHolder(android.support.v7.widget.RecyclerView.ViewHolder, int, List)}
+ * and {@link MyChangeAnimator} which properties of an item actually changed, so that only
+ * those are re-bound and animated.
+ */
+enum ItemPayload {
+    COLOR(true, false, true),
+    TEXT(false, true, true),
+    COLOR_AND_TEXT(true, true, true),
+    // the item is re-bound as it is now without a change animation, e.g. when a
+    // placeholder has been replaced by the loaded item
+    REBIND(true, true, false);
+
+    final boolean color;
+    final boolean text;
+    final boolean animate;
+
+    ItemPayload(boolean color, boolean text, boolean animate) {
+        this.color = color;
+        this.text = text;
+        this.animate = animate;
+    }
+
+    /**
+     * Whether any of the payloads changes the color. An empty list means a full change.
+     */
+    static boolean changesColor(List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            return true;
+        }
+        for (int i = 0; i < payloads.size(); i++) {
+            Object payload = payloads.get(i);
+            if (!(payload instanceof ItemPayload) || ((ItemPayload) payload).color) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether any of the payloads changes the text. An empty list means a full change.
+     */
+    static boolean changesText(List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            return true;
+        }
+        for (int i = 0; i < payloads.size(); i++) {
+            Object payload = payloads.get(i);
+            if (!(payload instanceof ItemPayload) || ((ItemPayload) payload).text) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the change should be animated. Only a change made up of {@link #REBIND}
+     * payloads is not.
+     */
+    static boolean animates(List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            return true;
+        }
+        for (int i = 0; i < payloads.size(); i++) {
+            Object payload = payloads.get(i);
+            if (!(payload instanceof ItemPayload) || ((ItemPayload) payload).animate) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
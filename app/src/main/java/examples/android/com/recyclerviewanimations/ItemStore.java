@@ -0,0 +1,545 @@
+package examples.android.com.recyclerviewanimations;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * The item list on disk: a binary snapshot plus a log of the edits made since. The
+ * snapshot is a small header followed by one fixed 12-byte row (id, color) per item, in
+ * list order, and is read and written through a memory mapping, with no parsing. Saving
+ * appends the edits since the last save to the log, so its cost follows the size of the
+ * edits rather than of the list, even for an edit at the front that shifts every row.
+ * Once the log has grown past a quarter of the snapshot, the snapshot is rewritten and
+ * the log emptied, which keeps restoring at one pass over the snapshot plus a bounded
+ * replay.
+ * <p>
+ * The store keeps the list it holds in memory, so that it can replay edits onto it and
+ * write the next snapshot without asking the main thread for anything.
+ * <p>
+ * Writes are crash-consistent. A log record carries a checksum and is forced to disk
+ * before the save counts as done; after a crash, a torn record at the end of the log is
+ * dropped, along with anything after it. A new snapshot is written to a temporary file
+ * and renamed over the old one, and carries the sequence number of the last record it
+ * includes, so that records still in the log after a crash are not applied twice.
+ * <p>
+ * Not thread-safe; ItemList does all its work on one background thread.
+ */
+class ItemStore implements Closeable {
+    private static final int MAGIC = 0x52564953; // "RVIS"
+    private static final int LOG_MAGIC = 0x52564c47; // "RVLG"
+    private static final int VERSION = 2;
+
+    // magic, version, size, unused, nextId, sequence, then the CRC32 of all that
+    private static final int HEADER_SIZE = 40;
+    private static final int HEADER_CHECKED_SIZE = 32;
+    // id, color
+    static final int ROW_SIZE = 12;
+    // magic, sequence, nextId, op ints, ids, colors; the payload follows, then the CRC32
+    // of it all
+    private static final int RECORD_HEADER_SIZE = 32;
+    // the log is never compacted into the snapshot below this size
+    private static final long MIN_CHECKPOINT_LOG_SIZE = 64 * 1024;
+
+    /**
+     * The files hold no valid store, and never will again; any other IOException may be
+     * a passing failure to read files that are fine.
+     */
+    static class CorruptException extends IOException {
+        CorruptException(String message) {
+            super(message);
+        }
+    }
+
+    private final File file;
+    private final FileChannel logChannel;
+    private long logSize;
+
+    // the list as of the last edits handed to the store, saved or not
+    private IntList colors = new IntList();
+    private LongList ids = new LongList();
+    private long nextId;
+    // sequence number of the last record written to the log
+    private long sequence;
+    // edits already applied to the lists above that have reached neither the log nor
+    // the snapshot yet
+    private final Edits unsaved = new Edits();
+    // whether the lists were replaced in a way only a new snapshot can record
+    private boolean snapshotNeeded;
+
+    private ItemStore(File file) throws IOException {
+        this.file = file;
+        logChannel = new RandomAccessFile(logFile(file), "rw").getChannel();
+    }
+
+    /**
+     * Opens the store in {@code file}, creating an empty one if the file does not exist,
+     * and reads the list it holds. Costs a pass over the snapshot and the log, so call it
+     * off the main thread.
+     *
+     * @throws CorruptException if the files hold no valid snapshot
+     * @throws IOException       if the files cannot be read
+     */
+    static ItemStore open(File file) throws IOException {
+        ItemStore store = new ItemStore(file);
+        try {
+            store.recover();
+        } catch (IOException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    /**
+     * Deletes the files of the store in {@code file}, which must not be open.
+     */
+    static void delete(File file) {
+        file.delete();
+        logFile(file).delete();
+        snapshotFile(file).delete();
+    }
+
+    static File logFile(File file) {
+        return new File(file.getPath() + ".log");
+    }
+
+    private static File snapshotFile(File file) {
+        return new File(file.getPath() + ".tmp");
+    }
+
+    int size() {
+        return colors.size();
+    }
+
+    long nextId() {
+        return nextId;
+    }
+
+    /**
+     * A copy of the colors of the stored list, for the caller to keep.
+     */
+    IntList copyColors() {
+        return colors.copy();
+    }
+
+    /**
+     * A copy of the ids of the stored list, for the caller to keep.
+     */
+    LongList copyIds() {
+        return ids.copy();
+    }
+
+    /**
+     * Applies {@code edits} to the stored list and appends them to the log, together with
+     * the edits of earlier calls that failed. {@code edits} may be reused once this
+     * returns.
+     *
+     * @throws IOException if the edits could not be written; they are kept and written
+     *                     with the next call
+     */
+    void append(Edits edits, long nextId) throws IOException {
+        apply(edits, colors, ids);
+        unsaved.addAll(edits);
+        this.nextId = nextId;
+        if (snapshotNeeded) {
+            writeSnapshot();
+            truncateLog();
+            return;
+        }
+        writeRecord();
+        if (logSize > Math.max(MIN_CHECKPOINT_LOG_SIZE, (long) colors.size() * ROW_SIZE / 4)) {
+            // replaying a longer log on startup would cost more than this rewrite
+            writeSnapshot();
+            truncateLog();
+        }
+    }
+
+    /**
+     * Replaces the stored list with {@code colors} and {@code ids}, which are only read
+     * during this call, and writes a new snapshot of it.
+     */
+    void replace(IntList colors, LongList ids, long nextId) throws IOException {
+        this.colors = colors.copy();
+        this.ids = ids.copy();
+        this.nextId = nextId;
+        unsaved.clear();
+        snapshotNeeded = true;
+        writeSnapshot();
+        truncateLog();
+    }
+
+    /**
+     * First step of {@link #append}: durably appends the unsaved edits to the log.
+     */
+    void writeRecord() throws IOException {
+        int opInts = unsaved.ops.size();
+        int idCount = unsaved.ids.size();
+        int colorCount = unsaved.colors.size();
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + opInts * 4 + idCount * 8
+                + colorCount * 4 + 8);
+        record.putInt(LOG_MAGIC).putLong(sequence + 1).putLong(nextId)
+                .putInt(opInts).putInt(idCount).putInt(colorCount);
+        for (int i = 0; i < opInts; i++) {
+            record.putInt(unsaved.ops.get(i));
+        }
+        for (int i = 0; i < idCount; i++) {
+            record.putLong(unsaved.ids.get(i));
+        }
+        for (int i = 0; i < colorCount; i++) {
+            record.putInt(unsaved.colors.get(i));
+        }
+        record.putLong(crc(record.array(), 0, record.position()));
+        record.flip();
+        while (record.hasRemaining()) {
+            logChannel.write(record, logSize + record.position());
+        }
+        logChannel.force(false);
+        logSize += record.capacity();
+        sequence++;
+        unsaved.clear();
+    }
+
+    /**
+     * Second step of {@link #append} once the log is long: writes the stored list to a
+     * new snapshot, which includes every record in the log from then on.
+     */
+    void writeSnapshot() throws IOException {
+        File temp = snapshotFile(file);
+        int size = colors.size();
+        RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            channel.truncate(0);
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_SIZE + (long) size * ROW_SIZE);
+            data.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(0)
+                    .putLong(nextId).putLong(sequence);
+            data.putLong(crcOfHeader(data));
+            for (int i = 0; i < size; i++) {
+                data.putLong(ids.get(i)).putInt(colors.get(i));
+            }
+            data.force();
+        } finally {
+            raf.close();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("could not replace " + file);
+        }
+        snapshotNeeded = false;
+        // the snapshot holds them now
+        unsaved.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        logChannel.close();
+    }
+
+    private void truncateLog() throws IOException {
+        // the records are all in the snapshot now
+        logChannel.truncate(0);
+        logChannel.force(false);
+        logSize = 0;
+    }
+
+    private void recover() throws IOException {
+        if (file.exists()) {
+            readSnapshot();
+        } else if (logChannel.size() > 0) {
+            // a snapshot is written before any record
+            throw new CorruptException("log without a snapshot");
+        } else {
+            // new store
+            writeSnapshot();
+        }
+        replayLog();
+    }
+
+    private void readSnapshot() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long length = channel.size();
+            if (length < HEADER_SIZE) {
+                throw new CorruptException("no valid snapshot");
+            }
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            int size = data.getInt(8);
+            if (data.getInt(0) != MAGIC || data.getInt(4) != VERSION
+                    || data.getLong(HEADER_CHECKED_SIZE) != crcOfHeader(data)
+                    || size < 0 || HEADER_SIZE + (long) size * ROW_SIZE > length) {
+                throw new CorruptException("no valid snapshot");
+            }
+            nextId = data.getLong(16);
+            sequence = data.getLong(24);
+            colors = new IntList(size);
+            ids = new LongList(size);
+            data.position(HEADER_SIZE);
+            for (int i = 0; i < size; i++) {
+                ids.add(data.getLong());
+                colors.add(data.getInt());
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Applies the records of the log that the snapshot does not include yet, up to the
+     * first one a crash has torn or that does not fit the list, and cuts the log off
+     * there.
+     */
+    private void replayLog() throws IOException {
+        long length = logChannel.size();
+        long position = 0;
+        Edits edits = new Edits();
+        while (true) {
+            ByteBuffer header = read(position, RECORD_HEADER_SIZE, length);
+            if (header == null || header.getInt(0) != LOG_MAGIC) {
+                break;
+            }
+            long recordSequence = header.getLong(4);
+            long recordNextId = header.getLong(12);
+            int opInts = header.getInt(20);
+            int idCount = header.getInt(24);
+            int colorCount = header.getInt(28);
+            if (opInts < 0 || idCount < 0 || colorCount < 0) {
+                break;
+            }
+            long payloadSize = opInts * 4L + idCount * 8L + colorCount * 4L;
+            ByteBuffer record = read(position, RECORD_HEADER_SIZE + payloadSize + 8, length);
+            if (record == null) {
+                break;
+            }
+            int end = record.capacity() - 8;
+            if (record.getLong(end) != crc(record.array(), 0, end)) {
+                break;
+            }
+            if (recordSequence > sequence) {
+                if (recordSequence != sequence + 1) {
+                    // a record went missing
+                    break;
+                }
+                edits.clear();
+                record.position(RECORD_HEADER_SIZE);
+                for (int i = 0; i < opInts; i++) {
+                    edits.ops.add(record.getInt());
+                }
+                for (int i = 0; i < idCount; i++) {
+                    edits.ids.add(record.getLong());
+                }
+                for (int i = 0; i < colorCount; i++) {
+                    edits.colors.add(record.getInt());
+                }
+                if (!fits(edits, colors.size())) {
+                    // written against another list; neither it nor anything after applies
+                    break;
+                }
+                apply(edits, colors, ids);
+                nextId = recordNextId;
+                sequence = recordSequence;
+            }
+            position += record.capacity();
+        }
+        if (position < length) {
+            logChannel.truncate(position);
+            logChannel.force(false);
+        }
+        logSize = position;
+    }
+
+    /**
+     * The {@code count} bytes of the log from {@code position} on, or null if the log,
+     * {@code length} bytes long, ends before them.
+     */
+    private ByteBuffer read(long position, long count, long length) throws IOException {
+        if (position + count > length || count > Integer.MAX_VALUE) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) count);
+        while (buffer.hasRemaining()) {
+            if (logChannel.read(buffer, position + buffer.position()) < 0) {
+                return null;
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Whether {@code edits} can be applied to a list of {@code size} items, so that a
+     * record is either applied whole or not at all.
+     */
+    private static boolean fits(Edits edits, int size) {
+        if (edits.ops.size() % 3 != 0) {
+            return false;
+        }
+        int ids = 0;
+        int colors = 0;
+        for (int i = 0; i < edits.ops.size(); i += 3) {
+            int position = edits.ops.get(i + 1);
+            int countOrTarget = edits.ops.get(i + 2);
+            if (position < 0 || countOrTarget < 0) {
+                return false;
+            }
+            switch (edits.ops.get(i)) {
+                case Edits.INSERTED:
+                    if (position > size || countOrTarget > edits.ids.size() - ids
+                            || countOrTarget > edits.colors.size() - colors) {
+                        return false;
+                    }
+                    ids += countOrTarget;
+                    colors += countOrTarget;
+                    size += countOrTarget;
+                    break;
+                case Edits.REMOVED:
+                    if (countOrTarget > size - position) {
+                        return false;
+                    }
+                    size -= countOrTarget;
+                    break;
+                case Edits.MOVED:
+                    if (position >= size || countOrTarget >= size) {
+                        return false;
+                    }
+                    break;
+                case Edits.CHANGED:
+                    if (position >= size || ++colors > edits.colors.size()) {
+                        return false;
+                    }
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private static void apply(Edits edits, IntList colors, LongList ids) {
+        for (int i = 0, id = 0, color = 0; i < edits.ops.size(); i += 3) {
+            int position = edits.ops.get(i + 1);
+            int countOrTarget = edits.ops.get(i + 2);
+            switch (edits.ops.get(i)) {
+                case Edits.INSERTED:
+                    for (int k = 0; k < countOrTarget; k++) {
+                        ids.add(position + k, edits.ids.get(id++));
+                        colors.add(position + k, edits.colors.get(color++));
+                    }
+                    break;
+                case Edits.REMOVED:
+                    ids.removeRange(position, countOrTarget);
+                    colors.removeRange(position, countOrTarget);
+                    break;
+                case Edits.MOVED:
+                    ids.move(position, countOrTarget);
+                    colors.move(position, countOrTarget);
+                    break;
+                case Edits.CHANGED:
+                    colors.set(position, edits.colors.get(color++));
+                    break;
+                default:
+                    throw new IndexOutOfBoundsException("operation: " + edits.ops.get(i));
+            }
+        }
+    }
+
+    private static long crcOfHeader(ByteBuffer data) {
+        byte[] header = new byte[HEADER_CHECKED_SIZE];
+        for (int i = 0; i < HEADER_CHECKED_SIZE; i++) {
+            header[i] = data.get(i);
+        }
+        return crc(header, 0, HEADER_CHECKED_SIZE);
+    }
+
+    private static long crc(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return crc.getValue();
+    }
+
+    /**
+     * Edits of the list by position, in the order they were made, for {@link #append}.
+     * Adjacent removals at the same position are merged as they are recorded.
+     */
+    static final class Edits {
+        private static final int INSERTED = 0;
+        private static final int REMOVED = 1;
+        private static final int MOVED = 2;
+        private static final int CHANGED = 3;
+
+        // (kind, position, count or target) of each edit
+        private final IntList ops = new IntList();
+        // ids and colors of the inserted items and colors of the changed ones, in order
+        private final LongList ids = new LongList();
+        private final IntList colors = new IntList();
+
+        boolean isEmpty() {
+            return ops.isEmpty();
+        }
+
+        void clear() {
+            ops.clear();
+            ids.clear();
+            colors.clear();
+        }
+
+        /**
+         * The {@code count} items from {@code position} on in {@code ids} and
+         * {@code colors} have just been inserted.
+         */
+        void inserted(int position, LongList ids, IntList colors, int count) {
+            record(INSERTED, position, count);
+            for (int i = position; i < position + count; i++) {
+                this.ids.add(ids.get(i));
+                this.colors.add(colors.get(i));
+            }
+        }
+
+        void inserted(int position, long id, int color) {
+            record(INSERTED, position, 1);
+            ids.add(id);
+            colors.add(color);
+        }
+
+        void removed(int position, int count) {
+            int last = ops.size() - 3;
+            if (last >= 0 && ops.get(last) == REMOVED && ops.get(last + 1) == position) {
+                ops.set(last + 2, ops.get(last + 2) + count);
+                return;
+            }
+            record(REMOVED, position, count);
+        }
+
+        void moved(int from, int to) {
+            record(MOVED, from, to);
+        }
+
+        void changed(int position, int color) {
+            record(CHANGED, position, 1);
+            colors.add(color);
+        }
+
+        void addAll(Edits edits) {
+            for (int i = 0; i < edits.ops.size(); i++) {
+                ops.add(edits.ops.get(i));
+            }
+            for (int i = 0; i < edits.ids.size(); i++) {
+                ids.add(edits.ids.get(i));
+            }
+            for (int i = 0; i < edits.colors.size(); i++) {
+                colors.add(edits.colors.get(i));
+            }
+        }
+
+        private void record(int kind, int position, int countOrTarget) {
+            ops.add(kind);
+            ops.add(position);
+            ops.add(countOrTarget);
+        }
+    }
+}
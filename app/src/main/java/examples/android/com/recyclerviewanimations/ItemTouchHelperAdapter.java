@@ -28,4 +28,21 @@ interface ItemTouchHelperAdapter {
      * @see RecyclerView.ViewHolder#getAdapterPosition()
      */
     void onItemDismiss(int position);
+
+    /**
+     * Called instead of {@link #onItemDismiss(int)} when dismissals are deferred. The item
+     * should disappear at once, with {@link RecyclerView.Adapter#notifyItemRemoved(int)},
+     * but only be marked as dismissed, so that it can be brought back by
+     * {@link #undoItemDismiss()} until it is removed from the data for good later on.
+     *
+     * @param position The position of the item dismissed.
+     */
+    void onItemDismissDeferred(int position);
+
+    /**
+     * Brings back the most recent deferred dismissal that can still be undone.
+     *
+     * @return Whether there was one.
+     */
+    boolean undoItemDismiss();
 }
\ No newline at end of file
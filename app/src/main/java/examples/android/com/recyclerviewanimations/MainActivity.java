@@ -6,14 +6,42 @@ import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.helper.ItemTouchHelper;
+import android.util.Log;
+import android.view.View;
 import android.widget.RadioGroup;
 import android.widget.Toast;
 
+import java.io.File;
+import java.io.IOException;
+
 public class MainActivity extends AppCompatActivity {
+    /**
+     * Boolean extra that runs change animations in render-property mode, see
+     * {@link MyChangeAnimator#setUseRenderProperties}. Off unless set, e.g. with
+     * {@code adb shell am start -n ... --ez use_render_properties true}.
+     */
+    static final String EXTRA_USE_RENDER_PROPERTIES = "use_render_properties";
+    // holders inflated in the background beyond the visible ones
+    private static final int WARM_UP_SPARE_HOLDERS = 4;
+    private static final String TAG = "MainActivity";
+    // the item list, kept across restarts, see ItemStore
+    private static final String ITEM_STORE_FILE = "items.bin";
+    // the fake source a refresh reads from: its size and the time each chunk takes
+    private static final int REFRESH_ITEM_COUNT = 10000;
+    private static final long REFRESH_CHUNK_LATENCY_MS = 200;
 
     SwipeRefreshLayout swipeRefreshLayout;
     RecyclerView recyclerView;
     RadioGroup mRadioGroup;
+    // holders ready to be bound, shared with any other RecyclerView of this activity;
+    // pre-filled by ViewHolderWarmUp, capped and trimmed by ViewPoolManager
+    RecyclerView.RecycledViewPool viewPool;
+    // create/bind/animation metrics; recording is switched on for debug builds and can be
+    // toggled at runtime, see ItemMetrics
+    final ItemMetrics metrics = new ItemMetrics();
+    MyAdapter adapter;
+    ViewHolderWarmUp viewHolderWarmUp;
+    RefreshPipeline refreshPipeline;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -24,38 +52,94 @@ public class MainActivity extends AppCompatActivity {
         recyclerView = (RecyclerView) findViewById(R.id.recyclerview);
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
 //        recyclerView.setItemAnimator(new SlideInRightAnimator());
-        recyclerView.setItemAnimator(new MyChangeAnimator());
+        metrics.setEnabled(BuildConfig.DEBUG);
+        MyChangeAnimator changeAnimator = new MyChangeAnimator();
+        changeAnimator.setMetrics(metrics);
+        changeAnimator.setUseRenderProperties(
+                getIntent().getBooleanExtra(EXTRA_USE_RENDER_PROPERTIES, false));
+        recyclerView.setItemAnimator(changeAnimator);
 
         recyclerView.setHasFixedSize(true);
+        viewPool = ViewPoolManager.get(this).poolFor(this);
+        recyclerView.setRecycledViewPool(viewPool);
 
-        final MyAdapter adapter = new MyAdapter(recyclerView, mRadioGroup, getLayoutInflater());
+        adapter = new MyAdapter(recyclerView, mRadioGroup, getLayoutInflater());
+        adapter.setMetrics(metrics);
+        adapter.attachStore(new File(getFilesDir(), ITEM_STORE_FILE));
         recyclerView.setAdapter(adapter);
+        ItemClickSupport.addTo(recyclerView).setOnItemClickListener(adapter);
+        viewHolderWarmUp = new ViewHolderWarmUp(recyclerView, adapter, WARM_UP_SPARE_HOLDERS);
+        viewHolderWarmUp.start();
 
         RecyclerView.ItemDecoration itemDecoration = new SpacesItemDecoration(16);
         recyclerView.addItemDecoration(itemDecoration);
 
-        ItemTouchHelper.Callback callback = new SimpleItemHelperCallback(adapter);
+        final SimpleItemHelperCallback callback = new SimpleItemHelperCallback(adapter);
+        callback.setDeferDismiss(true);
         ItemTouchHelper touchHelper = new ItemTouchHelper(callback);
         touchHelper.attachToRecyclerView(recyclerView);
+        findViewById(R.id.undoButton).setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                if (!callback.undoDismiss()) {
+                    Toast.makeText(MainActivity.this, "Nothing to undo", Toast.LENGTH_SHORT).show();
+                }
+            }
+        });
 
         swipeRefreshLayout = (SwipeRefreshLayout) findViewById(R.id.swipe_container);
         swipeRefreshLayout.setColorSchemeResources(android.R.color.black, android.R.color.holo_green_light);
 
+        refreshPipeline = new RefreshPipeline(adapter.getItems());
         swipeRefreshLayout.setOnRefreshListener(new SwipeRefreshLayout.OnRefreshListener() {
             @Override
             public void onRefresh() {
                 Toast.makeText(MainActivity.this, "REFRESH", Toast.LENGTH_SHORT).show();
-                swipeRefreshLayout.postDelayed(new Runnable() {
-                    @Override
-                    public void run() {
-//                        adapter.clear();
-//                        adapter.addAll();
-                        swipeRefreshLayout.setRefreshing(false);
-                    }
-                }, 4000);
+                refresh();
+            }
+        });
+
+    }
+
+    /**
+     * Reloads the list, chunk by chunk, and stops the spinner as soon as the screen is
+     * filled. Pulling again restarts it.
+     */
+    private void refresh() {
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        // a pull only starts at the top of the list, so this is the page on screen
+        int firstPageSize = Math.max(1, layoutManager.findLastVisibleItemPosition() + 1);
+        RefreshPipeline.Source source = new RefreshPipeline.SyntheticSource(System.nanoTime(),
+                REFRESH_ITEM_COUNT, REFRESH_CHUNK_LATENCY_MS);
+        refreshPipeline.start(source, firstPageSize, new RefreshPipeline.Listener() {
+            @Override
+            public void onFirstPage() {
+                swipeRefreshLayout.setRefreshing(false);
+            }
+
+            @Override
+            public void onFinished(int size) {
+            }
+
+            @Override
+            public void onFailed(IOException e) {
+                Log.w(TAG, "Could not refresh the item list", e);
+                swipeRefreshLayout.setRefreshing(false);
             }
         });
+    }
 
+    @Override
+    protected void onPause() {
+        super.onPause();
+        // the process may be killed any time from here on
+        adapter.getItems().save();
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        refreshPipeline.cancel();
+        adapter.detachStore();
+    }
 }
@@ -0,0 +1,29 @@
+package examples.android.com.recyclerviewanimations;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Runs tasks on the main thread, after whatever is already queued there. The classes
+ * that hand results from a background thread back to the main thread take an Executor
+ * for it rather than a Handler, so that plain JVM tests can give them one of their own.
+ */
+final class MainThreadExecutor implements Executor {
+    private static final MainThreadExecutor INSTANCE = new MainThreadExecutor();
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private MainThreadExecutor() {
+    }
+
+    static Executor get() {
+        return INSTANCE;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        handler.post(command);
+    }
+}
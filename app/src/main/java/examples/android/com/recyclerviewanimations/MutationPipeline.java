@@ -0,0 +1,433 @@
+package examples.android.com.recyclerviewanimations;
+
+import android.support.v7.util.BatchingListUpdateCallback;
+import android.support.v7.util.ListUpdateCallback;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Single-writer pipeline for edits to an {@link ItemList}. Producers on any thread
+ * enqueue {@link Mutation}s into a lock-free queue. One worker drains the queue and
+ * applies the mutations, in order, to a copy of the last list it was given or produced.
+ * It then hands the main thread the copy plus its merged notifications in a single
+ * message, as a {@link Batch}. The ItemList swaps the copy in whole, so the main thread's
+ * work per batch depends neither on the number of producers nor on how many mutations
+ * the batch holds.
+ * <p>
+ * The main thread hands back the lists a batch replaced, see {@link #recycle}. Rather
+ * than copying its last list again, the worker brings those up to date by replaying the
+ * last batch's edits onto them, as long as that moves fewer items than a copy would.
+ * <p>
+ * Mutations name items by stable id rather than by position, since positions shift under
+ * concurrent producers. A mutation of an item that is gone by the time it is applied is
+ * dropped.
+ * <p>
+ * Each list the worker builds on carries a version. A batch only fits the main thread's
+ * list if that list is still the version the batch was built on, i.e. it has not been
+ * edited in place since; see {@link Batch#baseVersion}.
+ */
+class MutationPipeline {
+
+    /**
+     * Receives the batches on the main thread.
+     */
+    interface Callback {
+        void onBatch(Batch batch);
+    }
+
+    static final int INSERT = 0;
+    static final int REMOVE = 1;
+    static final int SET = 2;
+
+    private final Executor mainExecutor;
+    private final Callback callback;
+    private volatile Executor executor;
+    private final ConcurrentLinkedQueue<Mutation> queue = new ConcurrentLinkedQueue<>();
+    // whether a drain is queued on the executor and has not started taking mutations yet
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicInteger versions = new AtomicInteger();
+    // list handed over by rebase() that the worker has not picked up yet
+    private final AtomicReference<Batch> pendingBase = new AtomicReference<>();
+    // lists handed back by recycle() that the worker has not picked up yet
+    private final AtomicReference<Batch> spare = new AtomicReference<>();
+
+    // worker state: the list the next batch is built on
+    private IntList baseColors;
+    private LongList baseIds;
+    private int baseVersion;
+    private final IdIndex index = new IdIndex();
+    // the batch whose lists are the base, if the base is one the worker built
+    private Batch previous;
+    private int copyCount;
+
+    /**
+     * A pipeline whose worker runs on {@code executor}, one task at a time, and whose
+     * batches are handed to {@code callback} through {@code mainExecutor}.
+     */
+    MutationPipeline(Executor executor, Executor mainExecutor, Callback callback) {
+        this.executor = executor;
+        this.mainExecutor = mainExecutor;
+        this.callback = callback;
+    }
+
+    /**
+     * Runs the worker on {@code executor} from the next drain on. It must run one task
+     * at a time.
+     */
+    void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * A version no list has had yet, for the main thread to give its list after editing
+     * it in place.
+     */
+    int newVersion() {
+        return versions.incrementAndGet();
+    }
+
+    /**
+     * Drops the mutations that have not been taken by the worker yet. Main thread only.
+     *
+     * @return a version greater than that of every batch built so far, and less than that
+     * of every batch built from now on
+     */
+    int discardPending() {
+        queue.clear();
+        return newVersion();
+    }
+
+    /**
+     * Makes the worker build its next batch on {@code colors} and {@code ids}, which are
+     * at {@code version}. Main thread only. The lists are shared with the worker from now
+     * on, so the caller must copy them before editing them again.
+     */
+    void rebase(IntList colors, LongList ids, int version) {
+        pendingBase.set(new Batch(colors, ids, version, version, null));
+    }
+
+    /**
+     * Hands {@code colors} and {@code ids}, which are at {@code version}, to the worker to
+     * build a later batch in, instead of a copy. Main thread only, and only with lists
+     * a batch has just replaced, which nothing else refers to any more.
+     */
+    void recycle(IntList colors, LongList ids, int version) {
+        spare.set(new Batch(colors, ids, version, version, null));
+    }
+
+    /**
+     * Number of times the worker has copied its base lists, for tests.
+     */
+    int copyCount() {
+        return copyCount;
+    }
+
+    /**
+     * Inserts a new item with id {@code newId} and {@code color} where the item with id
+     * {@code beforeId} is. Any thread.
+     */
+    void insert(long beforeId, long newId, int color) {
+        enqueue(new Mutation(INSERT, beforeId, newId, color));
+    }
+
+    /**
+     * Removes the item with id {@code id}. Any thread.
+     */
+    void remove(long id) {
+        enqueue(new Mutation(REMOVE, id, 0, 0));
+    }
+
+    /**
+     * Gives the item with id {@code id} the color {@code color}. Any thread.
+     */
+    void set(long id, int color) {
+        enqueue(new Mutation(SET, id, 0, color));
+    }
+
+    private void enqueue(Mutation mutation) {
+        queue.offer(mutation);
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(drain);
+        }
+    }
+
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            // mutations enqueued from here on schedule another drain if this one misses
+            // them
+            scheduled.set(false);
+            Mutation mutation = queue.poll();
+            if (mutation == null) {
+                return;
+            }
+            Batch base = pendingBase.getAndSet(null);
+            if (base != null) {
+                baseColors = base.colors;
+                baseIds = base.ids;
+                baseVersion = base.version;
+                previous = null;
+            }
+            Batch recycled = spare.getAndSet(null);
+            IntList colors;
+            LongList ids;
+            if (recycled != null && previous != null
+                    && recycled.version == previous.baseVersion
+                    && previous.shiftCost < baseIds.size()) {
+                // the lists the previous batch was built on; its edits make them equal to
+                // the base again
+                colors = recycled.colors;
+                ids = recycled.ids;
+                previous.replayOnto(colors, ids);
+            } else {
+                colors = baseColors.copy();
+                ids = baseIds.copy();
+                copyCount++;
+            }
+            index.onCopied(baseIds, ids);
+            List<Mutation> mutations = new ArrayList<>();
+            final Batch batch = new Batch(colors, ids, baseVersion, newVersion(), mutations);
+            BatchingListUpdateCallback updates = new BatchingListUpdateCallback(batch);
+            for (; mutation != null; mutation = queue.poll()) {
+                int size = ids.size();
+                int position = apply(mutation, colors, ids, index, updates);
+                mutations.add(mutation);
+                batch.positions.add(position);
+                if (position >= 0 && mutation.type != SET) {
+                    batch.shiftCost += size - position;
+                }
+            }
+            updates.dispatchLastEvent();
+            baseColors = colors;
+            baseIds = ids;
+            baseVersion = batch.version;
+            previous = batch;
+            mainExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onBatch(batch);
+                }
+            });
+        }
+    };
+
+    /**
+     * Applies {@code mutation} to {@code colors} and {@code ids}, announcing the change to
+     * {@code updates}, if the item it names is still there. {@code index} is kept up to
+     * date with the edit.
+     *
+     * @return the position the mutation was applied at, or -1 if it was dropped
+     */
+    private static int apply(Mutation mutation, IntList colors, LongList ids, IdIndex index,
+                             ListUpdateCallback updates) {
+        int position = index.positionOf(mutation.id, ids);
+        if (position < 0) {
+            return -1;
+        }
+        applyAt(mutation, position, colors, ids);
+        switch (mutation.type) {
+            case INSERT:
+                index.onInserted(ids, position, 1);
+                updates.onInserted(position, 1);
+                break;
+            case REMOVE:
+                index.onRemoved(ids, position, 1);
+                updates.onRemoved(position, 1);
+                break;
+            case SET:
+                // the label shows the color value, so both change
+                updates.onChanged(position, 1, ItemPayload.COLOR_AND_TEXT);
+                break;
+        }
+        return position;
+    }
+
+    private static void applyAt(Mutation mutation, int position, IntList colors,
+                                LongList ids) {
+        switch (mutation.type) {
+            case INSERT:
+                colors.add(position, mutation.color);
+                ids.add(position, mutation.newId);
+                break;
+            case REMOVE:
+                colors.remove(position);
+                ids.remove(position);
+                break;
+            case SET:
+                colors.set(position, mutation.color);
+                break;
+        }
+    }
+
+    static class Mutation {
+        final int type;
+        // the item to insert before, remove or change
+        final long id;
+        final long newId;
+        final int color;
+
+        Mutation(int type, long id, long newId, int color) {
+            this.type = type;
+            this.id = id;
+            this.newId = newId;
+            this.color = color;
+        }
+    }
+
+    /**
+     * The list after a run of mutations, with the notifications that lead to it from the
+     * list it was built on.
+     */
+    static class Batch implements ListUpdateCallback {
+        private static final int INSERTED = 0;
+        private static final int REMOVED = 1;
+        private static final int MOVED = 2;
+        private static final int CHANGED = 3;
+
+        final IntList colors;
+        final LongList ids;
+        // version of the list this batch was built on; the batch only fits a list at
+        // that version
+        final int baseVersion;
+        final int version;
+        // what the batch did, to replay on a list that has moved on from baseVersion
+        final List<Mutation> mutations;
+        // where each of the mutations was applied, or -1 if it was dropped
+        private final IntList positions = new IntList();
+        // items moved by the inserts and removals, to compare with the cost of a copy
+        private long shiftCost;
+        // notifications as (kind, position, count or target) triples
+        private final IntList notifications = new IntList();
+        private final List<Object> payloads = new ArrayList<>();
+
+        Batch(IntList colors, LongList ids, int baseVersion, int version,
+              List<Mutation> mutations) {
+            this.colors = colors;
+            this.ids = ids;
+            this.baseVersion = baseVersion;
+            this.version = version;
+            this.mutations = mutations;
+        }
+
+        int notificationCount() {
+            return notifications.size() / 3;
+        }
+
+        /**
+         * Applies the batch's mutations, at the positions they were applied at, to
+         * {@code colors} and {@code ids}, which must be equal to the lists the batch was
+         * built on.
+         */
+        private void replayOnto(IntList colors, LongList ids) {
+            for (int i = 0; i < mutations.size(); i++) {
+                int position = positions.get(i);
+                if (position >= 0) {
+                    applyAt(mutations.get(i), position, colors, ids);
+                }
+            }
+        }
+
+        /**
+         * Tells {@code index}, which follows the list this batch was built on, how the
+         * batch shifted the items, so that it follows the batch's list from now on.
+         */
+        void dispatchShiftsTo(IdIndex index) {
+            // one mutation at a time rather than the merged notifications: the ids a
+            // merged insertion covers are not where it says once later edits have
+            // shifted them
+            for (int i = 0; i < mutations.size(); i++) {
+                int position = positions.get(i);
+                if (position < 0) {
+                    continue;
+                }
+                Mutation mutation = mutations.get(i);
+                switch (mutation.type) {
+                    case INSERT:
+                        index.onInsertedId(ids, position, mutation.newId);
+                        break;
+                    case REMOVE:
+                        index.onRemoved(ids, position, 1);
+                        break;
+                }
+            }
+        }
+
+        /**
+         * Records the batch's edits in {@code edits}, one mutation at a time.
+         */
+        void dispatchEditsTo(ItemStore.Edits edits) {
+            for (int i = 0; i < mutations.size(); i++) {
+                int position = positions.get(i);
+                if (position < 0) {
+                    continue;
+                }
+                Mutation mutation = mutations.get(i);
+                switch (mutation.type) {
+                    case INSERT:
+                        edits.inserted(position, mutation.newId, mutation.color);
+                        break;
+                    case REMOVE:
+                        edits.removed(position, 1);
+                        break;
+                    case SET:
+                        edits.changed(position, mutation.color);
+                        break;
+                }
+            }
+        }
+
+        void dispatchUpdatesTo(ListUpdateCallback updates) {
+            for (int i = 0, change = 0; i < notifications.size(); i += 3) {
+                int position = notifications.get(i + 1);
+                int countOrTarget = notifications.get(i + 2);
+                switch (notifications.get(i)) {
+                    case INSERTED:
+                        updates.onInserted(position, countOrTarget);
+                        break;
+                    case REMOVED:
+                        updates.onRemoved(position, countOrTarget);
+                        break;
+                    case MOVED:
+                        updates.onMoved(position, countOrTarget);
+                        break;
+                    case CHANGED:
+                        updates.onChanged(position, countOrTarget, payloads.get(change++));
+                        break;
+                }
+            }
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            record(INSERTED, position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            record(REMOVED, position, count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            record(MOVED, fromPosition, toPosition);
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            record(CHANGED, position, count);
+            payloads.add(payload);
+        }
+
+        private void record(int kind, int position, int countOrTarget) {
+            notifications.add(kind);
+            notifications.add(position);
+            notifications.add(countOrTarget);
+        }
+    }
+}
@@ -1,142 +1,353 @@
 package examples.android.com.recyclerviewanimations;
 
 import android.graphics.Color;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.v7.widget.RecyclerView;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.RadioGroup;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
  * Custom adapter that supplies view holders to the RecyclerView. Our view holders
  * contain a simple LinearLayout (with a background color) and a TextView (displaying
- * the value of the container's bg color).
+ * the value of the container's bg color). The items themselves, and every edit of them,
+ * are in an {@link ItemList}, see {@link #getItems()}.
  */
-class MyAdapter extends RecyclerView.Adapter implements ItemTouchHelperAdapter {
+class MyAdapter extends RecyclerView.Adapter
+        implements ItemTouchHelperAdapter, ItemClickSupport.OnItemClickListener {
+    private static final String TAG = "MyAdapter";
 
-    private ArrayList<Integer> colors = new ArrayList<>();
+    // diffs for ItemList.submitColors() are computed here, one at a time, off the UI thread
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+    // mutations posted through the MutationPipeline are applied here, off the UI thread
+    private static final Executor MUTATION_EXECUTOR = Executors.newSingleThreadExecutor();
+    // the ItemStore is opened, read and saved to here, in order, off the UI thread
+    private static final Executor STORE_EXECUTOR = Executors.newSingleThreadExecutor();
+    // background of items whose page has not been loaded yet
+    private static final int PLACEHOLDER_COLOR = Color.LTGRAY;
+    // how long after the last deferred dismissal the dismissed items are removed for good
+    private static final long COMPACT_DELAY_MS = 3000;
+    // items a new list starts with, see attachStore()
+    private static final int INITIAL_ITEM_COUNT = 100;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // edits reach the RecyclerView through here, unless a paged list is shown instead
+    private final ItemList.Callback notifier = new ItemList.Callback() {
+        @Override
+        public void onInserted(int position, int count) {
+            if (pagedColors == null) {
+                notifyItemRangeInserted(position, count);
+            }
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            if (pagedColors == null) {
+                notifyItemRangeRemoved(position, count);
+            }
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            if (pagedColors == null) {
+                notifyItemMoved(fromPosition, toPosition);
+            }
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            if (pagedColors == null) {
+                notifyItemRangeChanged(position, count, payload);
+            }
+        }
+
+        @Override
+        public void onDataSetChanged() {
+            if (pagedColors == null) {
+                notifyDataSetChanged();
+            }
+        }
+
+        @Override
+        public void onStoreFailed(IOException e) {
+            Log.w(TAG, "Could not restore or save the item list", e);
+        }
+    };
+    private final ItemList items = new ItemList(notifier, MUTATION_EXECUTOR, DIFF_EXECUTOR,
+            STORE_EXECUTOR, MainThreadExecutor.get());
+    // colors of new items; seeded, so that a run can be repeated, see SyntheticWorkload
+    private final SyntheticWorkload workload;
+    private final Runnable compactWhenIdle = new Runnable() {
+        @Override
+        public void run() {
+            if (recyclerView.getScrollState() != RecyclerView.SCROLL_STATE_IDLE
+                    || recyclerView.isAnimating()) {
+                mainHandler.postDelayed(this, COMPACT_DELAY_MS);
+                return;
+            }
+            items.compactDismissed(true);
+        }
+    };
+    // when set, the items come from here instead of from the item list, and cannot be
+    // edited
+    private PagedColorList pagedColors;
     private RecyclerView recyclerView;
     private LayoutInflater layoutInflater;
     private RadioGroup radioGroup;
-
+    // item views inflated ahead of time, see createViewHolder(View)
+    private final ArrayDeque<View> inflatedViews = new ArrayDeque<>();
+    private ItemMetrics metrics = new ItemMetrics();
 
     MyAdapter(RecyclerView recyclerView, RadioGroup radioGroup, LayoutInflater layoutInflater) {
+        this(recyclerView, radioGroup, layoutInflater, System.nanoTime());
+    }
+
+    /**
+     * An adapter whose initial list and new item colors come from {@code seed}, for
+     * benchmarks and tests that need the same items on every run. The list is empty until
+     * {@link #attachStore} has read it.
+     */
+    MyAdapter(RecyclerView recyclerView, RadioGroup radioGroup, LayoutInflater layoutInflater,
+              long seed) {
+        this.workload = new SyntheticWorkload(seed);
         this.recyclerView = recyclerView;
         this.layoutInflater = layoutInflater;
         this.radioGroup = radioGroup;
-        generateData();
+        // lets the RecyclerView keep holders, and their animations, across moves and
+        // data set changes
+        setHasStableIds(true);
+    }
+
+    /**
+     * The items shown, unless a paged list is shown instead. Edits made there reach the
+     * RecyclerView through this adapter.
+     */
+    ItemList getItems() {
+        return items;
+    }
+
+    /**
+     * Records create/bind timings and pool reuse into {@code metrics}.
+     */
+    void setMetrics(ItemMetrics metrics) {
+        this.metrics = metrics;
     }
 
     @Override
     public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
-        View container = layoutInflater.inflate(R.layout.item_layout, parent, false);
-        container.setOnClickListener(mItemAction);
-        return new MyViewHolder(container);
+        long startNanos = metrics.startTiming();
+        View container = inflatedViews.poll();
+        if (container == null) {
+            container = layoutInflater.inflate(R.layout.item_layout, parent, false);
+        }
+        MyViewHolder holder = new MyViewHolder(container);
+        metrics.recordCreateLatency(startNanos);
+        return holder;
+    }
+
+    /**
+     * Creates a view holder for the RecycledViewPool around {@code container}, an item
+     * view inflated ahead of time. Only {@link #createViewHolder(ViewGroup, int)} gives a
+     * holder the view type the pool files it under, so the view is queued for
+     * {@link #onCreateViewHolder}, which takes the oldest queued view, if there is one,
+     * whatever holder it creates.
+     */
+    RecyclerView.ViewHolder createViewHolder(View container) {
+        inflatedViews.add(container);
+        MyViewHolder holder = (MyViewHolder) createViewHolder(recyclerView, 0);
+        // these are only created to go into the pool
+        holder.pooled = true;
+        return holder;
     }
 
     @Override
     public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+        long startNanos = metrics.startTiming();
         final MyViewHolder myHolder = (MyViewHolder) holder;
-        int color = colors.get(position);
-        myHolder.update(color, "#" + Integer.toHexString(color));
+        if (myHolder.pooled || !myHolder.bound) {
+            // a re-bind of an attached holder is neither a hit nor a miss
+            metrics.recordFullBind(myHolder.pooled);
+        }
+        myHolder.bound = true;
+        myHolder.pooled = false;
+        if (pagedColors != null && !pagedColors.isLoaded(position)) {
+            // starts loading the page; the item is re-bound once it is there
+            myHolder.showPlaceholder(pagedColors.get(position, PLACEHOLDER_COLOR));
+        } else {
+            myHolder.update(colorAt(position));
+        }
+        metrics.recordBindLatency(startNanos);
     }
 
     @Override
-    public int getItemCount() {
-        return colors.size();
+    public void onBindViewHolder(RecyclerView.ViewHolder holder, int position, List<Object> payloads) {
+        if (payloads.isEmpty() || (pagedColors != null && !pagedColors.isLoaded(position))) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        // partial bind: only touch what the change payloads say has changed
+        long startNanos = metrics.startTiming();
+        final MyViewHolder myHolder = (MyViewHolder) holder;
+        int color = colorAt(position);
+        if (ItemPayload.changesColor(payloads)) {
+            myHolder.updateColor(color);
+        }
+        if (ItemPayload.changesText(payloads)) {
+            myHolder.updateLabel(color);
+        }
+        metrics.recordBindLatency(startNanos);
     }
 
-    public void clear() {
-        colors.clear();
-        notifyDataSetChanged();
+    @Override
+    public void onViewRecycled(RecyclerView.ViewHolder holder) {
+        ((MyViewHolder) holder).pooled = true;
     }
 
-    public void addAll(List<Integer> colors) {
-        this.colors.addAll(colors);
-        notifyDataSetChanged();
+    @Override
+    public int getItemCount() {
+        return pagedColors != null ? pagedColors.size() : items.size();
     }
 
     @Override
-    public void onItemMove(int fromPosition, int toPosition) {
-        if (fromPosition < toPosition) {
-            for (int i = fromPosition; i < toPosition; i++) {
-                Collections.swap(colors, i, i + 1);
-            }
-        } else {
-            for (int i = fromPosition; i > toPosition; i--) {
-                Collections.swap(colors, i, i - 1);
-            }
+    public long getItemId(int position) {
+        // paged lists are read-only, so there a position is a stable identity
+        return pagedColors != null ? position : items.idAt(position);
+    }
+
+    /**
+     * Position of the item with stable id {@code id}, or {@link RecyclerView#NO_POSITION}.
+     */
+    public int positionOf(long id) {
+        if (pagedColors != null) {
+            return id >= 0 && id < pagedColors.size() ? (int) id : RecyclerView.NO_POSITION;
         }
-        notifyItemMoved(fromPosition, toPosition);
+        int position = items.positionOf(id);
+        return position >= 0 ? position : RecyclerView.NO_POSITION;
     }
 
-    @Override
-    public void onItemDismiss(int position) {
-        if (position != RecyclerView.NO_POSITION) {
-            colors.remove(position);
-            notifyItemRemoved(position);
+    private int colorAt(int position) {
+        return pagedColors != null
+                ? pagedColors.get(position, PLACEHOLDER_COLOR) : items.colorAt(position);
+    }
+
+    /**
+     * Shows the items of {@code list}, loading them page by page as they are bound, or
+     * goes back to the item list if {@code list} is null. Paged items are read-only:
+     * clicks, drags and swipes leave them as they are. Edits of the item list made in
+     * the meantime show once it is back.
+     */
+    public void setPagedColors(PagedColorList list) {
+        if (pagedColors != null) {
+            pagedColors.setCallback(null);
+        }
+        pagedColors = list;
+        if (list != null) {
+            list.setCallback(new PagedColorList.Callback() {
+                @Override
+                public void onItemRangeLoaded(int start, int count) {
+                    // placeholders turn into their items without a change animation
+                    notifyItemRangeChanged(start, count, ItemPayload.REBIND);
+                }
+            });
         }
+        notifyDataSetChanged();
     }
 
+    /**
+     * Shows the list kept in {@code file} once it has been read, or a new list if there is
+     * none; see {@link ItemList#attachStore}.
+     */
+    void attachStore(File file) {
+        items.attachStore(file, workload.nextColors(INITIAL_ITEM_COUNT));
+    }
 
-    private void deleteItem(View view) {
-        int position = recyclerView.getChildAdapterPosition(view);
-        if (position != RecyclerView.NO_POSITION) {
-            colors.remove(position);
-            notifyItemRemoved(position);
+    /**
+     * Saves the list and closes the attached store once the save is done.
+     */
+    void detachStore() {
+        final ItemStore store = items.detachStore();
+        if (store == null) {
+            return;
         }
+        STORE_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    store.close();
+                } catch (IOException e) {
+                    Log.w(TAG, "Could not close the item store", e);
+                }
+            }
+        });
     }
 
-    private void addItem(View view) {
-        int position = recyclerView.getChildAdapterPosition(view);
-        if (position != RecyclerView.NO_POSITION) {
-            int color = generateColor();
-            colors.add(position, color);
-            notifyItemInserted(position);
+    @Override
+    public void onItemMove(int fromPosition, int toPosition) {
+        if (fromPosition == RecyclerView.NO_POSITION || toPosition == RecyclerView.NO_POSITION
+                || pagedColors != null) {
+            return;
         }
+        items.moveItem(fromPosition, toPosition);
     }
 
-    private void changeItem(View view) {
-        int position = recyclerView.getChildAdapterPosition(view);
-        if (position != RecyclerView.NO_POSITION) {
-            int color = generateColor();
-            colors.set(position, color);
-            notifyItemChanged(position);
+    @Override
+    public void onItemDismiss(int position) {
+        if (position != RecyclerView.NO_POSITION && pagedColors != null) {
+            // paged items cannot be removed; bring the swiped-away view back
+            notifyItemChanged(position, ItemPayload.REBIND);
+        } else if (position != RecyclerView.NO_POSITION) {
+            items.postRemove(items.idAt(position));
         }
     }
 
-    private View.OnClickListener mItemAction = new View.OnClickListener() {
-        @Override
-        public void onClick(View v) {
-            switch (radioGroup.getCheckedRadioButtonId()) {
-                case R.id.deleteRB:
-                    deleteItem(v);
-                    break;
-                case R.id.addRB:
-                    addItem(v);
-                    break;
-                case R.id.changeRB:
-                    changeItem(v);
-                    break;
-            }
+    @Override
+    public void onItemDismissDeferred(int position) {
+        if (position == RecyclerView.NO_POSITION) {
+            return;
         }
-    };
+        if (pagedColors != null) {
+            onItemDismiss(position);
+            return;
+        }
+        items.dismissDeferred(position);
+        mainHandler.removeCallbacks(compactWhenIdle);
+        mainHandler.postDelayed(compactWhenIdle, COMPACT_DELAY_MS);
+    }
 
-    private int generateColor() {
-        int red = ((int) (Math.random() * 200));
-        int green = ((int) (Math.random() * 200));
-        int blue = ((int) (Math.random() * 200));
-        return Color.rgb(red, green, blue);
+    @Override
+    public boolean undoItemDismiss() {
+        return pagedColors == null && items.undoDismiss();
     }
 
-    private void generateData() {
-        for (int i = 0; i < 100; ++i) {
-            colors.add(generateColor());
+    /**
+     * Applies the action chosen in the RadioGroup to the clicked item. Clicks are routed
+     * here by {@link ItemClickSupport}, so item views carry no listeners.
+     */
+    @Override
+    public void onItemClicked(RecyclerView recyclerView, int position, View v) {
+        if (pagedColors != null) {
+            return;
+        }
+        switch (radioGroup.getCheckedRadioButtonId()) {
+            case R.id.deleteRB:
+                items.postRemove(items.idAt(position));
+                break;
+            case R.id.addRB:
+                items.postInsert(items.idAt(position), workload.nextColor());
+                break;
+            case R.id.changeRB:
+                items.postSet(items.idAt(position), workload.nextColor());
+                break;
         }
     }
-
-}
\ No newline at end of file
+}
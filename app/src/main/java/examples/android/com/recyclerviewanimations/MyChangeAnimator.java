@@ -1,21 +1,9 @@
 package examples.android.com.recyclerviewanimations;
 
-import android.animation.Animator;
-import android.animation.AnimatorListenerAdapter;
-import android.animation.AnimatorSet;
-import android.animation.ArgbEvaluator;
-import android.animation.ObjectAnimator;
-import android.graphics.Color;
 import android.graphics.drawable.ColorDrawable;
 import android.support.annotation.NonNull;
-import android.support.v4.util.ArrayMap;
 import android.support.v7.widget.DefaultItemAnimator;
 import android.support.v7.widget.RecyclerView;
-import android.view.View;
-import android.view.animation.AccelerateInterpolator;
-import android.view.animation.DecelerateInterpolator;
-import android.widget.LinearLayout;
-import android.widget.TextView;
 
 import java.util.List;
 
@@ -32,17 +20,41 @@ import java.util.List;
  * animated.
  */
 class MyChangeAnimator extends DefaultItemAnimator {
-    // stateless interpolator re-used for every change animation
-    private AccelerateInterpolator mAccelerateInterpolator = new AccelerateInterpolator();
-    private DecelerateInterpolator mDecelerateInterpolator = new DecelerateInterpolator();
-    private ArgbEvaluator mColorEvaluator = new ArgbEvaluator();
+    // Runs all change animations from one frame callback. When a new change animation
+    // runs on an item that is already being animated, the previous animation is stopped
+    // and the new one is constructed based on where the previous one was at when it was
+    // interrupted.
+    private final ChangeAnimationTicker mTicker = new ChangeAnimationTicker(
+            new ChangeAnimationTicker.Callback() {
+                @Override
+                public void onChangeAnimationFinished(MyViewHolder holder) {
+                    mMetrics.recordAnimationFinish();
+                    dispatchAnimationFinished(holder);
+                }
+
+                @Override
+                public void onFrame(int animating) {
+                    mMetrics.recordAnimationFrame(animating);
+                }
+            });
+
+    private ItemMetrics mMetrics = new ItemMetrics();
 
-    // Maps to hold running animators. These are used when running a new change
-    // animation on an item that is already being animated. mRunningAnimators is
-    // used to cancel the previous animation. mAnimatorMap is used to construct
-    // the new change animation based on where the previous one was at when it
-    // was interrupted.
-    private ArrayMap<RecyclerView.ViewHolder, AnimatorInfo> mAnimatorMap = new ArrayMap<>();
+    /**
+     * Records change animation timings and counts into {@code metrics}.
+     */
+    void setMetrics(ItemMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    /**
+     * Opt-in: run change animations on render properties (a shade's alpha, a hardware
+     * layer for the rotating text) instead of redrawing the row's background every frame.
+     * Affects animations started after the call.
+     */
+    void setUseRenderProperties(boolean useRenderProperties) {
+        mTicker.setUseRenderProperties(useRenderProperties);
+    }
 
     @Override
     public boolean canReuseUpdatedViewHolder(@NonNull RecyclerView.ViewHolder viewHolder) {
@@ -54,7 +66,7 @@ class MyChangeAnimator extends DefaultItemAnimator {
     @NonNull
     private ItemHolderInfo getItemHolderInfo(MyViewHolder viewHolder, ColorTextInfo info) {
         info.color = ((ColorDrawable) viewHolder.container.getBackground()).getColor();
-        info.text = (String) viewHolder.getTextView().getText();
+        info.label = viewHolder.getLabel();
         return info;
     }
 
@@ -66,6 +78,10 @@ class MyChangeAnimator extends DefaultItemAnimator {
                                                      @NonNull List<Object> payloads) {
         ColorTextInfo info = (ColorTextInfo) super.recordPreLayoutInformation(state, viewHolder,
                 changeFlags, payloads);
+        // payloads tell us which parts of the item changed; without any, animate everything
+        info.colorChanged = ItemPayload.changesColor(payloads);
+        info.textChanged = ItemPayload.changesText(payloads);
+        info.animate = ItemPayload.animates(payloads);
         return getItemHolderInfo((MyViewHolder) viewHolder, info);
     }
 
@@ -88,27 +104,11 @@ class MyChangeAnimator extends DefaultItemAnimator {
      */
     private class ColorTextInfo extends ItemHolderInfo {
         int color;
-        String text;
-    }
-
-    /**
-     * Holds child animator objects for any change animation. Used when a new change
-     * animation interrupts one already in progress; the new one is constructed to start
-     * from where the previous one was at when the interruption occurred.
-     */
-    private class AnimatorInfo {
-        Animator overallAnim;
-        ObjectAnimator fadeToBlackAnim, fadeFromBlackAnim, oldTextRotator, newTextRotator;
-
-        AnimatorInfo(Animator overallAnim,
-                     ObjectAnimator fadeToBlackAnim, ObjectAnimator fadeFromBlackAnim,
-                     ObjectAnimator oldTextRotator, ObjectAnimator newTextRotator) {
-            this.overallAnim = overallAnim;
-            this.fadeToBlackAnim = fadeToBlackAnim;
-            this.fadeFromBlackAnim = fadeFromBlackAnim;
-            this.oldTextRotator = oldTextRotator;
-            this.newTextRotator = newTextRotator;
-        }
+        // color value shown as the text
+        int label;
+        boolean colorChanged = true;
+        boolean textChanged = true;
+        boolean animate = true;
     }
 
     /**
@@ -128,177 +128,68 @@ class MyChangeAnimator extends DefaultItemAnimator {
             return super.animateChange(oldHolder, newHolder, preInfo, postInfo);
         }
 
+        long startNanos = mMetrics.startTiming();
         final MyViewHolder viewHolder = (MyViewHolder) newHolder;
 
         // Get the pre/post change values; these are what we are animating between
         ColorTextInfo oldInfo = (ColorTextInfo) preInfo;
         ColorTextInfo newInfo = (ColorTextInfo) postInfo;
-        int oldColor = oldInfo.color;
-        int newColor = newInfo.color;
-        final String oldText = oldInfo.text;
-        final String newText = newInfo.text;
 
-        // These are the objects whose values will be animated
-        LinearLayout newContainer = viewHolder.container;
-        final TextView newTextView = viewHolder.getTextView();
+        if (!oldInfo.animate && mTicker.indexOf(newHolder) < 0) {
+            // the holder has simply been re-bound and already shows its new state
+            dispatchAnimationFinished(newHolder);
+            return false;
+        }
 
         // Check to see if there's a change animation already running on this item
-        AnimatorInfo runningInfo = mAnimatorMap.get(newHolder);
+        int runningSlot = mTicker.indexOf(newHolder);
         long prevAnimPlayTime = 0;
         boolean firstHalf = false;
-        if (runningInfo != null) {
-            // The information we need to construct the new animators is whether we
+        int startColor = oldInfo.color;
+        if (runningSlot >= 0) {
+            // The information we need to construct the new animation is whether we
             // are in the 'first half' (fading to black and rotating the old text out)
             // and how far we are in whichever half is running
-            firstHalf = runningInfo.oldTextRotator != null &&
-                    runningInfo.oldTextRotator.isRunning();
-            prevAnimPlayTime = firstHalf ?
-                    runningInfo.oldTextRotator.getCurrentPlayTime() :
-                    runningInfo.newTextRotator.getCurrentPlayTime();
-            // done with previous animation - cancel it
-            runningInfo.overallAnim.cancel();
-        }
-
-        // Construct the fade to/from black animation
-        ObjectAnimator fadeToBlack = null, fadeFromBlack;
-        if (runningInfo == null || firstHalf) {
-            // The first part of the animation fades to black. Skip this phase
-            // if we're interrupting an animation that was already in the second phase.
-            int startColor = oldColor;
-            if (runningInfo != null) {
-                startColor = (Integer) runningInfo.fadeToBlackAnim.getAnimatedValue();
-            }
-            fadeToBlack = ObjectAnimator.ofInt(newContainer, "backgroundColor",
-                    startColor, Color.BLACK);
-            fadeToBlack.setEvaluator(mColorEvaluator);
-            if (runningInfo != null) {
-                // Seek to appropriate time in new animator if we were already
-                // running a previous animation
-                fadeToBlack.setCurrentPlayTime(prevAnimPlayTime);
+            firstHalf = mTicker.isInFirstHalf(runningSlot);
+            prevAnimPlayTime = mTicker.getHalfPlayTime(runningSlot);
+            if (firstHalf && mTicker.animatesColor(runningSlot)) {
+                startColor = mTicker.getCurrentColor(runningSlot);
             }
+            // done with previous animation - stop it where it is
+            mTicker.finish(runningSlot, false);
         }
 
-        // Second phase of animation fades from black to the new bg color
-        fadeFromBlack = ObjectAnimator.ofInt(newContainer, "backgroundColor",
-                Color.BLACK, newColor);
-        fadeFromBlack.setEvaluator(mColorEvaluator);
-        if (runningInfo != null && !firstHalf) {
-            // Seek to appropriate time in new animator if we were already
-            // running a previous animation
-            fadeFromBlack.setCurrentPlayTime(prevAnimPlayTime);
-        }
-
-        // Set up an animation to play both the first (if non-null) and second phases
-        AnimatorSet bgAnim = new AnimatorSet();
-        if (fadeToBlack != null) {
-            bgAnim.playSequentially(fadeToBlack, fadeFromBlack);
-        } else {
-            bgAnim.play(fadeFromBlack);
-        }
-
-        // The other part of the animation rotates the text, switching it to the
-        // new value half-way through (when it is perpendicular to the user)
-        ObjectAnimator oldTextRotate = null, newTextRotate;
-        if (runningInfo == null || firstHalf) {
-            // The first part of the animation rotates text to be perpendicular to user.
-            // Skip this phase if we're interrupting an animation that was already
-            // in the second phase.
-            oldTextRotate = ObjectAnimator.ofFloat(newTextView, View.ROTATION_X, 0, 90);
-            oldTextRotate.setInterpolator(mAccelerateInterpolator);
-            if (runningInfo != null) {
-                oldTextRotate.setCurrentPlayTime(prevAnimPlayTime);
-            }
-            oldTextRotate.addListener(new AnimatorListenerAdapter() {
-                boolean mCanceled = false;
-
-                @Override
-                public void onAnimationStart(Animator animation) {
-                    // text was changed as part of the item change notification. Change
-                    // it back for the first phase of the animation
-                    newTextView.setText(oldText);
-                }
-
-                @Override
-                public void onAnimationCancel(Animator animation) {
-                    mCanceled = true;
-                }
-
-                @Override
-                public void onAnimationEnd(Animator animation) {
-                    if (!mCanceled) {
-                        // Set it to the new text when the old rotator ends - this is when
-                        // it is perpendicular to the user (thus making the switch
-                        // invisible)
-                        newTextView.setText(newText);
-                    }
-                }
-            });
-        }
-
-        // Second half of text rotation rotates from perpendicular to 0
-        newTextRotate = ObjectAnimator.ofFloat(newTextView, View.ROTATION_X, -90, 0);
-        newTextRotate.setInterpolator(mDecelerateInterpolator);
-        if (runningInfo != null && !firstHalf) {
-            // If we're interrupting a previous second-phase animation, seek to that time
-            newTextRotate.setCurrentPlayTime(prevAnimPlayTime);
-        }
-
-        // Choreograph first and second half. First half may be null if we interrupted
-        // a second-phase animation
-        AnimatorSet textAnim = new AnimatorSet();
-        if (oldTextRotate != null) {
-            textAnim.playSequentially(oldTextRotate, newTextRotate);
-        } else {
-            textAnim.play(newTextRotate);
-        }
-
-        // Choreograph both animations: color fading and text rotating
-        AnimatorSet changeAnim = new AnimatorSet();
-        changeAnim.playTogether(bgAnim, textAnim);
-        changeAnim.addListener(new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                dispatchAnimationFinished(newHolder);
-                mAnimatorMap.remove(newHolder);
-            }
-        });
-        changeAnim.start();
-
-        // Store info about this animation to be re-used if a succeeding change event
-        // occurs while it's still running
-        AnimatorInfo runningAnimInfo = new AnimatorInfo(changeAnim, fadeToBlack, fadeFromBlack,
-                oldTextRotate, newTextRotate);
-        mAnimatorMap.put(newHolder, runningAnimInfo);
+        boolean interrupted = runningSlot >= 0;
+        mMetrics.recordAnimationStart(interrupted);
+        // Only animate what the change payloads say has changed. An interrupting change
+        // always runs both parts so that it picks up cleanly from the previous one.
+        mTicker.start(viewHolder, startColor, newInfo.color, oldInfo.label, newInfo.label,
+                interrupted || oldInfo.colorChanged, interrupted || oldInfo.textChanged,
+                interrupted && !firstHalf, prevAnimPlayTime);
 
+        mMetrics.recordAnimateChangeLatency(startNanos);
         return true;
     }
 
     @Override
     public void endAnimation(RecyclerView.ViewHolder item) {
         super.endAnimation(item);
-        if (!mAnimatorMap.isEmpty()) {
-            final int numRunning = mAnimatorMap.size();
-            for (int i = numRunning; i >= 0; i--) {
-                if (item == mAnimatorMap.keyAt(i)) {
-                    mAnimatorMap.valueAt(i).overallAnim.cancel();
-                }
-            }
+        int slot = mTicker.indexOf(item);
+        if (slot >= 0) {
+            mMetrics.recordAnimationCancels(1);
+            mTicker.finish(slot, true);
         }
     }
 
     @Override
     public boolean isRunning() {
-        return super.isRunning() || !mAnimatorMap.isEmpty();
+        return super.isRunning() || !mTicker.isEmpty();
     }
 
     @Override
     public void endAnimations() {
         super.endAnimations();
-        if (!mAnimatorMap.isEmpty()) {
-            final int numRunning = mAnimatorMap.size();
-            for (int i = numRunning; i >= 0; i--) {
-                mAnimatorMap.valueAt(i).overallAnim.cancel();
-            }
-        }
+        mMetrics.recordAnimationCancels(mTicker.size());
+        mTicker.finishAll();
     }
 }
@@ -7,17 +7,57 @@ import android.widget.TextView;
 
 class MyViewHolder extends RecyclerView.ViewHolder {
     private TextView textView;
+    // the label is formatted into this buffer, which the TextView then shows without a copy
+    private final char[] labelBuffer = new char[HexLabel.MAX_LENGTH];
+    private int label;
     LinearLayout container;
+    // black overlay, faded in and out by change animations in render-property mode
+    ShadeView shade;
+    // for ItemMetrics: whether the holder has been bound yet, and whether it is in (or
+    // has just come out of) the RecycledViewPool
+    boolean bound;
+    boolean pooled;
+    // slot of the change animation running on this holder in ChangeAnimationTicker, or -1
+    int changeAnimationSlot = -1;
 
     MyViewHolder(View v) {
         super(v);
-        container = (LinearLayout) v;
+        container = (LinearLayout) v.findViewById(R.id.container);
+        shade = (ShadeView) v.findViewById(R.id.shade);
         textView = (TextView) v.findViewById(R.id.textview);
     }
 
-    void update(int color, String text) {
+    void update(int color) {
+        updateColor(color);
+        updateLabel(color);
+    }
+
+    void updateColor(int color) {
         container.setBackgroundColor(color);
-        textView.setText(text);
+    }
+
+    /**
+     * Shows an item that has not been loaded yet: just a background, no text.
+     */
+    void showPlaceholder(int color) {
+        updateColor(color);
+        label = color;
+        textView.setText(labelBuffer, 0, 0);
+    }
+
+    /**
+     * Shows the hex value of {@code color} as the text.
+     */
+    void updateLabel(int color) {
+        label = color;
+        textView.setText(labelBuffer, 0, HexLabel.format(color, labelBuffer));
+    }
+
+    /**
+     * The color value the text currently shows.
+     */
+    int getLabel() {
+        return label;
     }
 
     TextView getTextView() {
@@ -0,0 +1,180 @@
+package examples.android.com.recyclerviewanimations;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Read-only list of colors whose items are loaded in fixed-size pages, for lists too large
+ * to keep in memory. The total count is known up front, so the adapter can report every
+ * item straight away; items whose page has not arrived yet are placeholders. Pages are
+ * loaded on a background executor as binding gets near them, and only a bounded number
+ * of pages is kept, evicting the one farthest from where the user is.
+ * <p>
+ * All methods must be called on the main thread.
+ */
+class PagedColorList {
+
+    interface PageLoader {
+        /**
+         * Loads the colors of items [start, start + count) into {@code out}. Called on a
+         * background thread.
+         */
+        void loadPage(int start, int count, int[] out);
+    }
+
+    interface Callback {
+        /**
+         * Items [start, start + count) have been loaded and are no longer placeholders.
+         */
+        void onItemRangeLoaded(int start, int count);
+    }
+
+    private final PageLoader loader;
+    private final Executor executor;
+    private final Executor mainExecutor;
+    private final int size;
+    private final int pageSize;
+    private final int maxPages;
+    // once a bind gets this close to the edge of its page it is heading for, the page
+    // beyond that edge is requested
+    private final int prefetchDistance;
+
+    // colors of each loaded page, by page number, or null
+    private final int[][] pages;
+    private final boolean[] pendingPages;
+    // numbers of the pages in pages, in the order they were loaded
+    private final IntList loadedPages = new IntList();
+    // arrays of evicted pages, handed to the next loads
+    private final ArrayList<int[]> freeArrays = new ArrayList<>();
+    private int lastPosition;
+    private int lastAccessedPage;
+    // 1 while the positions bound go up, -1 while they go down
+    private int direction = 1;
+    private Callback callback;
+
+    PagedColorList(PageLoader loader, Executor executor, int size, int pageSize, int maxPages) {
+        this(loader, executor, MainThreadExecutor.get(), size, pageSize, maxPages);
+    }
+
+    /**
+     * @param mainExecutor hands loaded pages to the main thread
+     * @param size         total number of items
+     * @param pageSize     number of items loaded at once
+     * @param maxPages     number of pages kept in memory; at least three so that the
+     *                     current page and both of its neighbours fit
+     */
+    PagedColorList(PageLoader loader, Executor executor, Executor mainExecutor, int size,
+                   int pageSize, int maxPages) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize: " + pageSize);
+        }
+        if (maxPages < 3) {
+            throw new IllegalArgumentException("maxPages: " + maxPages);
+        }
+        this.loader = loader;
+        this.executor = executor;
+        this.mainExecutor = mainExecutor;
+        this.size = size;
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+        this.prefetchDistance = pageSize / 2;
+        int pageCount = (int) (((long) size + pageSize - 1) / pageSize);
+        this.pages = new int[pageCount][];
+        this.pendingPages = new boolean[pageCount];
+    }
+
+    void setCallback(Callback callback) {
+        this.callback = callback;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isLoaded(int position) {
+        checkIndex(position);
+        return pages[position / pageSize] != null;
+    }
+
+    /**
+     * Color of the item at {@code position}, or {@code placeholder} if its page has not
+     * been loaded yet, in which case the load is started. Never blocks.
+     */
+    int get(int position, int placeholder) {
+        checkIndex(position);
+        int page = position / pageSize;
+        int offset = position % pageSize;
+        if (position != lastPosition) {
+            direction = position > lastPosition ? 1 : -1;
+            lastPosition = position;
+        }
+        lastAccessedPage = page;
+        // binds follow the scroll, so load ahead in the direction they have been going
+        if (direction > 0 && offset >= pageSize - prefetchDistance) {
+            requestPage(page + 1);
+        } else if (direction < 0 && offset < prefetchDistance) {
+            requestPage(page - 1);
+        }
+        int[] colors = pages[page];
+        if (colors == null) {
+            requestPage(page);
+            return placeholder;
+        }
+        return colors[offset];
+    }
+
+    private void requestPage(final int page) {
+        final int start = page * pageSize;
+        if (page < 0 || page >= pages.length || pages[page] != null || pendingPages[page]) {
+            return;
+        }
+        pendingPages[page] = true;
+        final int count = Math.min(pageSize, size - start);
+        int free = freeArrays.size();
+        final int[] out = free > 0 ? freeArrays.remove(free - 1) : new int[pageSize];
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                loader.loadPage(start, count, out);
+                mainExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        pendingPages[page] = false;
+                        pages[page] = out;
+                        loadedPages.add(page);
+                        trimPages();
+                        // if the user has moved on since it was requested, the page may
+                        // have been evicted straight away, and is still a placeholder
+                        if (pages[page] != null && callback != null) {
+                            callback.onItemRangeLoaded(start, count);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Evicts the pages farthest from the last accessed one until at most maxPages remain.
+     */
+    private void trimPages() {
+        while (loadedPages.size() > maxPages) {
+            int farthest = 0;
+            for (int i = 1; i < loadedPages.size(); i++) {
+                if (Math.abs(loadedPages.get(i) - lastAccessedPage)
+                        > Math.abs(loadedPages.get(farthest) - lastAccessedPage)) {
+                    farthest = i;
+                }
+            }
+            int page = loadedPages.remove(farthest);
+            freeArrays.add(pages[page]);
+            pages[page] = null;
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package examples.android.com.recyclerviewanimations;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Reloads an {@link ItemList} from a {@link Source} in chunks. Each chunk is merged into
+ * the list as soon as it arrives, see {@link ItemList#mergeRefreshChunk}, so the first
+ * page is on screen after one read, however long the whole list is. The first chunk is
+ * exactly the page the caller asks for, the rest are {@link #CHUNK_SIZE} long; once the
+ * source runs dry, whatever the old list had beyond the new one is removed. The list
+ * keeps track of where the next chunk goes, so the user can go on editing it meanwhile.
+ * <p>
+ * Starting a refresh cancels the one before: its worker stops at its next chunk and
+ * anything it has already posted is dropped. Main thread only.
+ */
+class RefreshPipeline {
+    static final int CHUNK_SIZE = 256;
+
+    /**
+     * Where a refresh reads its items from.
+     */
+    interface Source {
+        /**
+         * Up to {@code maxCount} more colors, or null once there are no more. Called on a
+         * background thread, one call at a time.
+         */
+        int[] read(int maxCount) throws IOException;
+    }
+
+    /**
+     * Hears about the progress of a refresh on the main thread. Nothing is heard about a
+     * refresh once it has been cancelled.
+     */
+    interface Listener {
+        /**
+         * The first page is in the list, or the whole list if it is shorter.
+         */
+        void onFirstPage();
+
+        /**
+         * The refresh is done; the list holds {@code size} items, the ones read and any
+         * inserted meanwhile.
+         */
+        void onFinished(int size);
+
+        /**
+         * The refresh stopped part way. The items read so far stay in the list, and so do
+         * the old ones after them.
+         */
+        void onFailed(IOException e);
+    }
+
+    private static final Executor DEFAULT_EXECUTOR = Executors.newCachedThreadPool();
+
+    private final ItemList items;
+    private final Executor executor;
+    private final Executor mainExecutor;
+    // the refresh that is running; the workers and the chunks they post check this
+    private volatile int generation;
+
+    RefreshPipeline(ItemList items) {
+        this(items, DEFAULT_EXECUTOR, MainThreadExecutor.get());
+    }
+
+    /**
+     * A pipeline whose workers run on {@code executor} and hand their chunks to the main
+     * thread through {@code mainExecutor}. Since a cancelled worker can still be blocked
+     * in a read, {@code executor} should not make a new refresh wait for that one.
+     */
+    RefreshPipeline(ItemList items, Executor executor, Executor mainExecutor) {
+        this.items = items;
+        this.executor = executor;
+        this.mainExecutor = mainExecutor;
+    }
+
+    /**
+     * Cancels any refresh that is running and starts reading from {@code source}, the
+     * first chunk being the {@code firstPageSize} items that fill the screen.
+     */
+    void start(final Source source, final int firstPageSize, final Listener listener) {
+        if (firstPageSize <= 0) {
+            throw new IllegalArgumentException("firstPageSize: " + firstPageSize);
+        }
+        final int refresh = ++generation;
+        items.beginRefresh();
+        final Progress progress = new Progress(firstPageSize, listener);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                int offset = 0;
+                int maxCount = firstPageSize;
+                while (refresh == generation) {
+                    int[] chunk;
+                    try {
+                        chunk = source.read(maxCount);
+                    } catch (IOException e) {
+                        post(refresh, progress, offset, null, e);
+                        return;
+                    }
+                    post(refresh, progress, offset, chunk, null);
+                    if (chunk == null) {
+                        return;
+                    }
+                    offset += chunk.length;
+                    maxCount = CHUNK_SIZE;
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops the refresh that is running, if any. The items it has merged stay.
+     */
+    void cancel() {
+        generation++;
+        items.abandonRefresh();
+    }
+
+    /**
+     * Hands the main thread {@code chunk}, which follows the {@code offset} items read
+     * before it, or, if null, the end of the refresh, failed if there is {@code error}.
+     */
+    private void post(final int refresh, final Progress progress, final int offset,
+                      final int[] chunk, final IOException error) {
+        mainExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (refresh != generation) {
+                    return;
+                }
+                if (chunk != null) {
+                    items.mergeRefreshChunk(chunk);
+                    progress.loaded(offset + chunk.length);
+                    return;
+                }
+                if (error != null) {
+                    items.abandonRefresh();
+                    progress.listener.onFailed(error);
+                    return;
+                }
+                items.finishRefresh();
+                progress.loaded(Integer.MAX_VALUE);
+                progress.listener.onFinished(items.size());
+            }
+        });
+    }
+
+    /**
+     * Main thread side of one refresh.
+     */
+    private static class Progress {
+        final int firstPageSize;
+        final Listener listener;
+        boolean firstPageShown;
+
+        Progress(int firstPageSize, Listener listener) {
+            this.firstPageSize = firstPageSize;
+            this.listener = listener;
+        }
+
+        void loaded(int count) {
+            if (!firstPageShown && count >= firstPageSize) {
+                firstPageShown = true;
+                listener.onFirstPage();
+            }
+        }
+    }
+
+    /**
+     * Stand-in for a remote source: {@code size} colors from a {@link SyntheticWorkload},
+     * each read taking {@code latencyMillis}, like a round trip would.
+     */
+    static class SyntheticSource implements Source {
+        private final SyntheticWorkload workload;
+        private final long latencyMillis;
+        private int remaining;
+
+        SyntheticSource(long seed, int size, long latencyMillis) {
+            this.workload = new SyntheticWorkload(seed);
+            this.remaining = size;
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public int[] read(int maxCount) throws IOException {
+            if (remaining == 0) {
+                return null;
+            }
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while reading");
+            }
+            int count = Math.min(maxCount, remaining);
+            remaining -= count;
+            return workload.nextColors(count);
+        }
+    }
+}
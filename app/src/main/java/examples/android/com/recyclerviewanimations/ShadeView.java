@@ -0,0 +1,26 @@
+package examples.android.com.recyclerviewanimations;
+
+import android.content.Context;
+import android.util.AttributeSet;
+import android.view.View;
+
+/**
+ * The black shade that change animations fade over an item in render-property mode. It
+ * only draws its background, which cannot overlap itself, so it tells the renderer to
+ * apply its alpha while drawing instead of drawing it into an offscreen buffer first.
+ */
+public class ShadeView extends View {
+
+    public ShadeView(Context context) {
+        super(context);
+    }
+
+    public ShadeView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    @Override
+    public boolean hasOverlappingRendering() {
+        return false;
+    }
+}
@@ -6,11 +6,28 @@ import android.support.v7.widget.helper.ItemTouchHelper;
 class SimpleItemHelperCallback extends ItemTouchHelper.Callback {
 
     private ItemTouchHelperAdapter adapter;
+    private boolean deferDismiss;
 
     SimpleItemHelperCallback(ItemTouchHelperAdapter adapter) {
         this.adapter = adapter;
     }
 
+    /**
+     * With {@code deferDismiss}, a swipe only hides the item and leaves removing it to the
+     * adapter, which can do it for many swipes at once, and the dismissal can be undone
+     * with {@link #undoDismiss()}.
+     */
+    void setDeferDismiss(boolean deferDismiss) {
+        this.deferDismiss = deferDismiss;
+    }
+
+    /**
+     * Brings back the item most recently swiped away in deferred mode, if it still can be.
+     */
+    boolean undoDismiss() {
+        return adapter.undoItemDismiss();
+    }
+
     @Override
     public boolean isLongPressDragEnabled() {
         return true;
@@ -36,6 +53,10 @@ class SimpleItemHelperCallback extends ItemTouchHelper.Callback {
 
     @Override
     public void onSwiped(RecyclerView.ViewHolder viewHolder, int direction) {
-        adapter.onItemDismiss(viewHolder.getAdapterPosition());
+        if (deferDismiss) {
+            adapter.onItemDismissDeferred(viewHolder.getAdapterPosition());
+        } else {
+            adapter.onItemDismiss(viewHolder.getAdapterPosition());
+        }
     }
 }
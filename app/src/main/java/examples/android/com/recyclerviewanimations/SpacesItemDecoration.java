@@ -1,23 +1,132 @@
 package examples.android.com.recyclerviewanimations;
 
 import android.graphics.Rect;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.StaggeredGridLayoutManager;
 import android.view.View;
 
+/**
+ * Puts {@code space} around every item, without doubling it between neighbours, for
+ * LinearLayoutManager, GridLayoutManager and StaggeredGridLayoutManager in either
+ * orientation. Across the spans the space is shared out so that the edges and the gaps
+ * between spans are all {@code space} wide and every span stays equally wide. Along the
+ * scroll direction only the first group of items (the first row of a vertical grid) gets
+ * space before it.
+ * <p>
+ * The insets of each span edge are computed once per span count and orientation. A layout
+ * pass then only reads the span index and layout position the layout manager has already
+ * put into each child's layout params. The first group has at most one item per span, so
+ * only the first {@code spanCount} positions are checked against it, from the span sizes
+ * of the items before them; nothing needs to watch the adapter for changes.
+ */
 class SpacesItemDecoration extends RecyclerView.ItemDecoration {
     private final int space;
 
+    // inset at the start of span i, and at the end of a cell ending before span i
+    private int[] spanStarts = new int[0];
+    private int[] spanEnds = new int[0];
+    private int spanCount;
+    private boolean vertical;
+    private GridLayoutManager.SpanSizeLookup spanSizeLookup;
+
     SpacesItemDecoration(int space) {
         this.space = space;
     }
 
     @Override
     public void getItemOffsets(Rect outRect, View view, RecyclerView parent, RecyclerView.State state) {
-        outRect.left = space;
-        outRect.right = space;
-        outRect.bottom = space;
-        // Add top margin only for the first item to avoid double space between items
-        if (parent.getChildAdapterPosition(view) == 0)
-            outRect.top = space;
+        RecyclerView.LayoutManager layoutManager = parent.getLayoutManager();
+        RecyclerView.LayoutParams params = (RecyclerView.LayoutParams) view.getLayoutParams();
+        updateConfiguration(layoutManager);
+
+        int spanIndex = 0;
+        int spanSize = 1;
+        boolean fullSpan = false;
+        if (layoutManager instanceof GridLayoutManager) {
+            GridLayoutManager.LayoutParams gridParams = (GridLayoutManager.LayoutParams) params;
+            spanIndex = gridParams.getSpanIndex();
+            spanSize = gridParams.getSpanSize();
+        } else if (layoutManager instanceof StaggeredGridLayoutManager) {
+            StaggeredGridLayoutManager.LayoutParams staggeredParams =
+                    (StaggeredGridLayoutManager.LayoutParams) params;
+            fullSpan = staggeredParams.isFullSpan();
+            spanIndex = fullSpan ? 0 : staggeredParams.getSpanIndex();
+            spanSize = fullSpan ? spanCount : 1;
+        }
+        if (spanIndex < 0 || spanIndex + spanSize > spanCount) {
+            // not assigned a span yet
+            spanIndex = 0;
+            spanSize = spanCount;
+        }
+        int start = spanStarts[spanIndex];
+        int end = spanEnds[spanIndex + spanSize];
+        int before = isInFirstGroup(layoutManager, params.getViewLayoutPosition(), fullSpan)
+                ? space : 0;
+        if (vertical) {
+            outRect.set(start, before, end, space);
+        } else {
+            outRect.set(before, start, space, end);
+        }
+    }
+
+    private void updateConfiguration(RecyclerView.LayoutManager layoutManager) {
+        int newSpanCount = 1;
+        boolean newVertical = true;
+        GridLayoutManager.SpanSizeLookup newLookup = null;
+        if (layoutManager instanceof GridLayoutManager) {
+            GridLayoutManager grid = (GridLayoutManager) layoutManager;
+            newSpanCount = grid.getSpanCount();
+            newVertical = grid.getOrientation() == GridLayoutManager.VERTICAL;
+            newLookup = grid.getSpanSizeLookup();
+        } else if (layoutManager instanceof StaggeredGridLayoutManager) {
+            StaggeredGridLayoutManager staggered = (StaggeredGridLayoutManager) layoutManager;
+            newSpanCount = staggered.getSpanCount();
+            newVertical = staggered.getOrientation() == StaggeredGridLayoutManager.VERTICAL;
+        } else if (layoutManager instanceof LinearLayoutManager) {
+            newVertical = ((LinearLayoutManager) layoutManager).getOrientation()
+                    == LinearLayoutManager.VERTICAL;
+        }
+        if (newSpanCount != spanCount) {
+            spanCount = newSpanCount;
+            spanStarts = new int[spanCount + 1];
+            spanEnds = new int[spanCount + 1];
+            // span i gets space - i * space / n before it and (i + 1) * space / n after it:
+            // every gap adds up to space, and every span gives up the same width
+            for (int i = 0; i <= spanCount; i++) {
+                spanStarts[i] = space - i * space / spanCount;
+                spanEnds[i] = i * space / spanCount;
+            }
+        }
+        vertical = newVertical;
+        spanSizeLookup = newLookup;
+    }
+
+    private boolean isInFirstGroup(RecyclerView.LayoutManager layoutManager, int position,
+                                   boolean fullSpan) {
+        if (position == RecyclerView.NO_POSITION || position >= spanCount) {
+            return false;
+        }
+        if (fullSpan) {
+            // a full-span staggered item is a group of its own
+            return position == 0;
+        }
+        if (layoutManager instanceof StaggeredGridLayoutManager && position > 0) {
+            // the group ends before the second item if the first one is full-span
+            View first = layoutManager.findViewByPosition(0);
+            return first == null || !((StaggeredGridLayoutManager.LayoutParams)
+                    first.getLayoutParams()).isFullSpan();
+        }
+        if (spanSizeLookup == null) {
+            // one item per span
+            return true;
+        }
+        // in the group if it still fits into the spans after the items before it
+        int spans = 0;
+        for (int i = 0; i <= position; i++) {
+            spans += spanSizeLookup.getSpanSize(i);
+        }
+        return spans <= spanCount;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,94 @@
+package examples.android.com.recyclerviewanimations;
+
+/**
+ * Color interpolation in linear light, as ArgbEvaluator does it since API 26, but with
+ * table lookups and fixed-point math instead of a Math.pow() per channel, and without
+ * boxing. The result is within one step per channel of ArgbEvaluator's. Free of Android
+ * classes, like {@link ChangeFrames}, so it can be benchmarked on a plain JVM.
+ * <p>
+ * Fractions and linear intensities are both fixed-point numbers with
+ * {@link #FRACTION_BITS} fraction bits.
+ */
+final class SrgbBlend {
+    static final int FRACTION_BITS = 24;
+    static final int ONE = 1 << FRACTION_BITS;
+
+    // ArgbEvaluator's transfer function, rather than the piecewise one of the sRGB spec
+    private static final double GAMMA = 2.2;
+    // the linear intensities are split into this many bits' worth of buckets for encode()
+    private static final int BUCKET_BITS = 12;
+    private static final int BUCKET_SHIFT = FRACTION_BITS - BUCKET_BITS;
+
+    // linear intensity of each sRGB channel value
+    private static final int[] TO_LINEAR = new int[256];
+    // smallest linear intensity that encodes to each sRGB value, plus a sentinel
+    private static final int[] LOWER_BOUNDS = new int[257];
+    // sRGB value of the smallest intensity in each bucket; encode() steps up from there,
+    // at most a few times in the darkest buckets, where the curve is steepest
+    private static final byte[] BUCKET_STARTS = new byte[(1 << BUCKET_BITS) + 1];
+
+    static {
+        for (int v = 0; v < 256; v++) {
+            TO_LINEAR[v] = (int) Math.round(Math.pow(v / 255.0, GAMMA) * ONE);
+            // v is the rounded encoding of every intensity from ((v - 0.5) / 255)^GAMMA up
+            LOWER_BOUNDS[v] = v == 0 ? 0 : (int) Math.ceil(Math.pow((v - 0.5) / 255, GAMMA) * ONE);
+        }
+        LOWER_BOUNDS[256] = Integer.MAX_VALUE;
+        int v = 0;
+        for (int bucket = 0; bucket < BUCKET_STARTS.length; bucket++) {
+            while (LOWER_BOUNDS[v + 1] <= bucket << BUCKET_SHIFT) {
+                v++;
+            }
+            BUCKET_STARTS[bucket] = (byte) v;
+        }
+    }
+
+    private SrgbBlend() {
+    }
+
+    /**
+     * The color {@code fraction}, from 0 to 1, of the way from {@code from} to {@code to},
+     * both ARGB. The color channels are interpolated in linear light, alpha as it is.
+     */
+    static int blend(int from, int to, float fraction) {
+        return blend(from, to, (int) (fraction * ONE));
+    }
+
+    /**
+     * As {@link #blend(int, int, float)}, with {@code fraction} in fixed point, from 0 to
+     * {@link #ONE}.
+     */
+    static int blend(int from, int to, int fraction) {
+        int fromAlpha = from >>> 24;
+        int alpha = fromAlpha + (int) (((long) ((to >>> 24) - fromAlpha) * fraction
+                + (ONE >> 1)) >> FRACTION_BITS);
+        return alpha << 24
+                | blendChannel((from >> 16) & 0xff, (to >> 16) & 0xff, fraction) << 16
+                | blendChannel((from >> 8) & 0xff, (to >> 8) & 0xff, fraction) << 8
+                | blendChannel(from & 0xff, to & 0xff, fraction);
+    }
+
+    /**
+     * Linear intensity of the sRGB channel value {@code value}, from 0 to {@link #ONE}.
+     */
+    static int toLinear(int value) {
+        return TO_LINEAR[value];
+    }
+
+    /**
+     * sRGB channel value, from 0 to 255, of the linear intensity {@code linear}, which
+     * goes from 0 to {@link #ONE}. Rounds to the nearest value, like ArgbEvaluator.
+     */
+    static int toSrgb(int linear) {
+        int v = BUCKET_STARTS[linear >> BUCKET_SHIFT] & 0xff;
+        while (linear >= LOWER_BOUNDS[v + 1]) {
+            v++;
+        }
+        return v;
+    }
+
+    private static int blendChannel(int from, int to, int fraction) {
+        int start = TO_LINEAR[from];
+        return toSrgb(start + (int) ((long) (TO_LINEAR[to] - start) * fraction >> FRACTION_BITS));
+    }
+}
@@ -0,0 +1,277 @@
+package examples.android.com.recyclerviewanimations;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Seeded source of item colors and mutation scripts, so that benchmarks and stress tests
+ * can replay the same load on any machine.
+ * <p>
+ * The values are a SplitMix64 sequence: value i is a hash of {@code seed + i * GAMMA},
+ * computed from i alone. A range of colors can therefore be filled in chunks on any
+ * number of threads and come out the same as a serial fill, and {@link #split()} gives an
+ * independent generator without sharing any state. An instance itself is not thread-safe.
+ */
+class SyntheticWorkload {
+    static final int ADD = 0;
+    static final int DELETE = 1;
+    static final int CHANGE = 2;
+    static final int MOVE = 3;
+
+    private static final long GAMMA = 0x9e3779b97f4a7c15L;
+    // colors filled per task by fillColors()
+    private static final int CHUNK_SIZE = 1 << 16;
+    // channels stay below this, so that the white label stays readable
+    private static final int MAX_CHANNEL = 200;
+
+    // a thread per core, for nextColors(int)
+    private static final Executor CORES =
+            Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+    private final long seed;
+    // index of the next value
+    private long index;
+
+    SyntheticWorkload(long seed) {
+        this.seed = seed;
+    }
+
+    long nextLong() {
+        return mix(seed + index++ * GAMMA);
+    }
+
+    /**
+     * Uniform in [0, bound).
+     */
+    int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound: " + bound);
+        }
+        // the high 31 bits scaled down; the bias is below 2^-31 * bound
+        return (int) (((nextLong() >>> 33) * bound) >>> 31);
+    }
+
+    /**
+     * Uniform in [0, 1).
+     */
+    double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * A generator whose values are independent of this one's. Advances this one by one
+     * value.
+     */
+    SyntheticWorkload split() {
+        return new SyntheticWorkload(nextLong());
+    }
+
+    int nextColor() {
+        return color(nextLong());
+    }
+
+    /**
+     * The next {@code count} colors, filled in parallel on a thread per core if there are
+     * many.
+     */
+    int[] nextColors(int count) {
+        return nextColors(count, CORES);
+    }
+
+    /**
+     * The next {@code count} colors, as {@link #nextColor()} would return them one by one.
+     * Ranges of more than one chunk are filled in parallel on {@code executor}, which
+     * should have a thread per core; the calling thread fills a chunk too and waits for
+     * the rest.
+     */
+    int[] nextColors(int count, Executor executor) {
+        final int[] colors = new int[count];
+        final long first = index;
+        index += count;
+        int chunks = (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        if (chunks <= 1) {
+            fillColors(colors, first, 0, count);
+            return colors;
+        }
+        final CountDownLatch done = new CountDownLatch(chunks - 1);
+        for (int chunk = 1; chunk < chunks; chunk++) {
+            final int from = chunk * CHUNK_SIZE;
+            final int to = Math.min(count, from + CHUNK_SIZE);
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    fillColors(colors, first, from, to);
+                    done.countDown();
+                }
+            });
+        }
+        fillColors(colors, first, 0, CHUNK_SIZE);
+        boolean interrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException e) {
+                // the chunks are short and already queued, so wait for them anyway
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return colors;
+    }
+
+    /**
+     * A script of {@code length} mutations of a list of {@code initialSize} items. Each
+     * mutation is an add, delete, change or move, picked with the relative weights given,
+     * as the RadioGroup modes and drag and drop would produce them. Positions are drawn
+     * as {@code size * u^skew} for a uniform u: a skew of 1 spreads them evenly, larger
+     * ones crowd them towards the top of the list, where the user is. Deletes and moves
+     * that the list is too short for become adds.
+     */
+    Script nextScript(int initialSize, int length, int addWeight, int deleteWeight,
+                      int changeWeight, int moveWeight, double skew) {
+        int total = addWeight + deleteWeight + changeWeight + moveWeight;
+        if (initialSize < 0 || length < 0 || addWeight < 0 || deleteWeight < 0
+                || changeWeight < 0 || moveWeight < 0 || total <= 0 || !(skew > 0)) {
+            throw new IllegalArgumentException("size: " + initialSize + ", length: " + length
+                    + ", weights: " + addWeight + "/" + deleteWeight + "/" + changeWeight
+                    + "/" + moveWeight + ", skew: " + skew);
+        }
+        IntList ops = new IntList();
+        int size = initialSize;
+        for (int i = 0; i < length; i++) {
+            int pick = nextInt(total);
+            int type;
+            if (pick < addWeight) {
+                type = ADD;
+            } else if ((pick -= addWeight) < deleteWeight) {
+                type = DELETE;
+            } else if (pick - deleteWeight < changeWeight) {
+                type = CHANGE;
+            } else {
+                type = MOVE;
+            }
+            if (size < (type == MOVE ? 2 : 1)) {
+                type = ADD;
+            }
+            int argument = 0;
+            int position;
+            switch (type) {
+                case ADD:
+                    // before any item, or at the end
+                    position = skewed(size + 1, skew);
+                    argument = nextColor();
+                    size++;
+                    break;
+                case DELETE:
+                    position = skewed(size, skew);
+                    size--;
+                    break;
+                case CHANGE:
+                    position = skewed(size, skew);
+                    argument = nextColor();
+                    break;
+                default:
+                    position = skewed(size, skew);
+                    // anywhere else, so that every move moves something
+                    argument = nextInt(size - 1);
+                    if (argument >= position) {
+                        argument++;
+                    }
+                    break;
+            }
+            ops.add(type);
+            ops.add(position);
+            ops.add(argument);
+        }
+        return new Script(initialSize, size, ops);
+    }
+
+    private int skewed(int size, double skew) {
+        int position = (int) (size * Math.pow(nextDouble(), skew));
+        return Math.min(position, size - 1);
+    }
+
+    private void fillColors(int[] colors, long first, int from, int to) {
+        long state = seed + (first + from) * GAMMA;
+        for (int i = from; i < to; i++, state += GAMMA) {
+            colors[i] = color(mix(state));
+        }
+    }
+
+    private static int color(long bits) {
+        int red = (int) (((bits & 0xffff) * MAX_CHANNEL) >>> 16);
+        int green = (int) ((((bits >>> 16) & 0xffff) * MAX_CHANNEL) >>> 16);
+        int blue = (int) ((((bits >>> 32) & 0xffff) * MAX_CHANNEL) >>> 16);
+        // as Color.rgb() does it
+        return 0xff000000 | red << 16 | green << 8 | blue;
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Mutations by position, each valid on the list as the ones before it left it.
+     */
+    static class Script {
+        final int initialSize;
+        final int finalSize;
+        // (type, position, color or target) triples
+        private final IntList ops;
+
+        Script(int initialSize, int finalSize, IntList ops) {
+            this.initialSize = initialSize;
+            this.finalSize = finalSize;
+            this.ops = ops;
+        }
+
+        int length() {
+            return ops.size() / 3;
+        }
+
+        int type(int i) {
+            return ops.get(i * 3);
+        }
+
+        int position(int i) {
+            return ops.get(i * 3 + 1);
+        }
+
+        /**
+         * The new color of an add or change, or the target position of a move.
+         */
+        int argument(int i) {
+            return ops.get(i * 3 + 2);
+        }
+
+        /**
+         * Applies mutations {@code from} to {@code to} to {@code items}, which must be as
+         * the earlier mutations left them.
+         */
+        void replay(ItemList items, int from, int to) {
+            for (int i = from; i < to; i++) {
+                switch (type(i)) {
+                    case ADD:
+                        items.insertItem(position(i), argument(i));
+                        break;
+                    case DELETE:
+                        items.removeItem(position(i));
+                        break;
+                    case CHANGE:
+                        items.setItem(position(i), argument(i));
+                        break;
+                    case MOVE:
+                        items.moveItem(position(i), argument(i));
+                        break;
+                }
+            }
+        }
+    }
+}
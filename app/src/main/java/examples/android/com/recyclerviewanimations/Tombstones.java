@@ -0,0 +1,226 @@
+package examples.android.com.recyclerviewanimations;
+
+import java.util.Arrays;
+
+/**
+ * Bitmap of the items of a list that are dismissed but still physically in it. A Fenwick
+ * tree over the number of live items in each 64-bit word of the bitmap maps between an
+ * item's index in the whole list and its position among the live ones in O(log n), so
+ * dismissing or restoring an item never shifts the list. When the list itself is edited,
+ * {@link #splice} and {@link #move} shift the bitmap along with it a word at a time.
+ */
+class Tombstones {
+    private long[] words = new long[0];
+    // the other half of the double buffer splice() shifts words into
+    private long[] scratch = new long[0];
+    // 1-based Fenwick tree over the live items of each word
+    private int[] tree = new int[1];
+    private int wordCount;
+    private int length;
+    private int count;
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Number of dismissed items.
+     */
+    int count() {
+        return count;
+    }
+
+    /**
+     * Starts over on a list of {@code length} items, none of them dismissed. Costs one
+     * pass over the words of the bitmap, not over the items.
+     */
+    void reset(int length) {
+        this.length = length;
+        wordCount = (length + 63) >>> 6;
+        if (words.length < wordCount) {
+            words = new long[wordCount];
+            tree = new int[wordCount + 1];
+        } else {
+            Arrays.fill(words, 0, wordCount, 0);
+        }
+        count = 0;
+        buildTree();
+    }
+
+    /**
+     * Follows an edit of the list that replaced the {@code removed} items from
+     * {@code index} on with {@code inserted} live ones. Costs a pass over the words of
+     * the bitmap.
+     */
+    void splice(int index, int removed, int inserted) {
+        if (index < 0 || removed < 0 || inserted < 0 || index + removed > length) {
+            throw new IndexOutOfBoundsException("index: " + index + ", removed: " + removed
+                    + ", length: " + length);
+        }
+        int newLength = length - removed + inserted;
+        int newWordCount = (newLength + 63) >>> 6;
+        if (scratch.length < newWordCount) {
+            scratch = new long[Math.max(newWordCount, words.length)];
+        }
+        long[] shifted = scratch;
+        // items behind the edit move by this many places
+        int shift = inserted - removed;
+        int tail = index + inserted;
+        for (int word = 0; word < newWordCount; word++) {
+            int start = word << 6;
+            long bits = 0;
+            if (start < index) {
+                // the part before the edit stays where it is
+                bits = words[word] & maskBelow(index - start);
+            }
+            if (start + 64 > tail) {
+                bits |= bitsAt(start - shift) & ~maskBelow(tail - start);
+            }
+            if (start + 64 > newLength) {
+                bits &= maskBelow(newLength - start);
+            }
+            shifted[word] = bits;
+        }
+        scratch = words;
+        words = shifted;
+        if (tree.length < newWordCount + 1) {
+            tree = new int[words.length + 1];
+        }
+        length = newLength;
+        wordCount = newWordCount;
+        count = 0;
+        for (int word = 0; word < wordCount; word++) {
+            count += Long.bitCount(words[word]);
+        }
+        buildTree();
+    }
+
+    /**
+     * Follows an edit of the list that moved the item at {@code from} to {@code to}.
+     */
+    void move(int from, int to) {
+        boolean wasDismissed = contains(from);
+        checkIndex(to);
+        splice(from, 1, 0);
+        splice(to, 0, 1);
+        if (wasDismissed) {
+            add(to);
+        }
+    }
+
+    /**
+     * The 64 bits from {@code index} on, which may be negative or past the end; bits
+     * outside the bitmap read as 0.
+     */
+    private long bitsAt(int index) {
+        // floor division and modulo, for negative indices too
+        int word = index >> 6;
+        int offset = index & 63;
+        long low = word >= 0 && word < wordCount ? words[word] : 0;
+        if (offset == 0) {
+            return low;
+        }
+        long high = word + 1 >= 0 && word + 1 < wordCount ? words[word + 1] : 0;
+        return low >>> offset | high << (64 - offset);
+    }
+
+    /**
+     * Mask of the lowest {@code bits} bits of a word, for any {@code bits}.
+     */
+    private static long maskBelow(int bits) {
+        if (bits <= 0) {
+            return 0;
+        }
+        return bits >= 64 ? -1L : (1L << bits) - 1;
+    }
+
+    /**
+     * Linear-time Fenwick build over the live items of each word: each node passes its
+     * sum on to its parent.
+     */
+    private void buildTree() {
+        for (int i = 1; i <= wordCount; i++) {
+            int items = Math.min(64, length - ((i - 1) << 6));
+            tree[i] = items - Long.bitCount(words[i - 1]);
+        }
+        for (int i = 1; i <= wordCount; i++) {
+            int parent = i + (i & -i);
+            if (parent <= wordCount) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+
+    boolean contains(int index) {
+        checkIndex(index);
+        return (words[index >>> 6] & 1L << index) != 0;
+    }
+
+    void add(int index) {
+        if (!contains(index)) {
+            words[index >>> 6] |= 1L << index;
+            update(index >>> 6, -1);
+            count++;
+        }
+    }
+
+    void remove(int index) {
+        if (contains(index)) {
+            words[index >>> 6] &= ~(1L << index);
+            update(index >>> 6, 1);
+            count--;
+        }
+    }
+
+    /**
+     * Index in the whole list of the live item at {@code position} among the live ones.
+     */
+    int liveIndex(int position) {
+        if (position < 0 || position >= length - count) {
+            throw new IndexOutOfBoundsException("position: " + position
+                    + ", live: " + (length - count));
+        }
+        // descend to the last word whose preceding words hold at most position live items
+        int word = 0;
+        int remaining = position;
+        for (int step = Integer.highestOneBit(Math.max(wordCount, 1)); step > 0; step >>= 1) {
+            int next = word + step;
+            if (next <= wordCount && tree[next] <= remaining) {
+                word = next;
+                remaining -= tree[next];
+            }
+        }
+        long live = ~words[word];
+        for (int i = 0; i < remaining; i++) {
+            live &= live - 1;
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(live);
+    }
+
+    /**
+     * Number of live items before {@code index} in the whole list, i.e. the position the
+     * item at {@code index} has, or would have, among the live ones.
+     */
+    int liveRank(int index) {
+        checkIndex(index);
+        int word = index >>> 6;
+        int rank = 0;
+        for (int i = word; i > 0; i -= i & -i) {
+            rank += tree[i];
+        }
+        long below = (1L << index) - 1;
+        return rank + Long.bitCount(~words[word] & below);
+    }
+
+    private void update(int word, int delta) {
+        for (int i = word + 1; i <= wordCount; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+        }
+    }
+}
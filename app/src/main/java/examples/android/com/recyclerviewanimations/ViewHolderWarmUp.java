@@ -0,0 +1,103 @@
+package examples.android.com.recyclerviewanimations;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.view.AsyncLayoutInflater;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Fills the RecyclerView's RecycledViewPool with item view holders whose layouts were
+ * inflated on a background thread. Once the first frame is laid out, the pool is sized to
+ * the number of visible items plus some spare ones and topped up to that size, so that
+ * neither the first fling nor the re-population after a refresh has to inflate on the UI
+ * thread. Keeping the pool that large also stops it from dropping all but the default five
+ * holders when the list is cleared.
+ */
+class ViewHolderWarmUp implements AsyncLayoutInflater.OnInflateFinishedListener {
+    // MyAdapter has a single view type
+    private static final int ITEM_VIEW_TYPE = 0;
+
+    /**
+     * Inflates the spare item views and hands each one to {@code listener} on the UI
+     * thread.
+     */
+    interface Inflater {
+        void inflate(int resid, ViewGroup parent,
+                     AsyncLayoutInflater.OnInflateFinishedListener listener);
+    }
+
+    private final RecyclerView recyclerView;
+    private final MyAdapter adapter;
+    private final int spareCount;
+    private Inflater inflater;
+
+    /**
+     * @param spareCount number of holders to keep ready on top of one screen full of items
+     */
+    ViewHolderWarmUp(RecyclerView recyclerView, MyAdapter adapter, int spareCount) {
+        this.recyclerView = recyclerView;
+        this.adapter = adapter;
+        this.spareCount = spareCount;
+        final AsyncLayoutInflater asyncInflater =
+                new AsyncLayoutInflater(recyclerView.getContext());
+        this.inflater = new Inflater() {
+            @Override
+            public void inflate(int resid, ViewGroup parent,
+                                AsyncLayoutInflater.OnInflateFinishedListener listener) {
+                asyncInflater.inflate(resid, parent, listener);
+            }
+        };
+    }
+
+    /**
+     * Replaces the background inflation, e.g. with {@link #inflateOnUiThread}, so that
+     * tests know the pool is full once the warm-up has run. Only inflations not
+     * started yet use it: {@link #start()} waits for the first layout pass, so calling
+     * this before that pass is enough.
+     */
+    void setInflater(Inflater inflater) {
+        this.inflater = inflater;
+    }
+
+    /**
+     * Inflates on the calling thread and hands over the view straight away.
+     */
+    static Inflater inflateOnUiThread() {
+        return new Inflater() {
+            @Override
+            public void inflate(int resid, ViewGroup parent,
+                                AsyncLayoutInflater.OnInflateFinishedListener listener) {
+                View view = LayoutInflater.from(parent.getContext()).inflate(resid, parent, false);
+                listener.onInflateFinished(view, resid, parent);
+            }
+        };
+    }
+
+    /**
+     * Waits for the first layout pass, then sizes the pool and starts inflating.
+     */
+    void start() {
+        recyclerView.post(new Runnable() {
+            @Override
+            public void run() {
+                // the holders on screen are the ones a refresh will return to the pool
+                int visibleCount = recyclerView.getChildCount();
+                int poolSize = visibleCount + spareCount;
+                recyclerView.getRecycledViewPool().setMaxRecycledViews(ITEM_VIEW_TYPE, poolSize);
+                // the visible holders already exist; only the spare ones need inflating
+                for (int i = 0; i < spareCount; i++) {
+                    inflater.inflate(R.layout.item_layout, recyclerView, ViewHolderWarmUp.this);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onInflateFinished(@NonNull View view, int resid, @Nullable ViewGroup parent) {
+        // called on the UI thread; wrapping the view is cheap next to inflating it
+        recyclerView.getRecycledViewPool().putRecycledView(adapter.createViewHolder(view));
+    }
+}
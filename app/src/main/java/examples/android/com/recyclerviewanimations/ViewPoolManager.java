@@ -0,0 +1,346 @@
+package examples.android.com.recyclerviewanimations;
+
+import android.app.Activity;
+import android.app.ActivityManager;
+import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Bundle;
+import android.support.v7.widget.RecyclerView;
+import android.util.SparseIntArray;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * Process-wide owner of the RecycledViewPools. Each activity gets one pool, see
+ * {@link #poolFor(Activity)}, and all of its RecyclerViews share the holders in it by
+ * view type, so a second list or screen reuses holders instead of inflating its own. Pools
+ * are not shared between activities: a holder's views belong to the context they were
+ * inflated with.
+ * <p>
+ * The pools hold at most a budget of views between them, and each view type at most half
+ * of that. A holder counts as the number of views in its item view's tree, counted once
+ * per view type. The heap a view takes varies too much to be measured from the app, so
+ * the caps are view counts, not bytes: the budget scales with the heap class, at
+ * {@link #VIEWS_PER_HEAP_MB} views per megabyte. {@code onTrimMemory} and
+ * {@code onLowMemory} shrink the budget in steps, evicting holders down to it. It
+ * grows back a step each time an activity is started, unless the system is low on memory.
+ * <p>
+ * Main thread only.
+ */
+class ViewPoolManager implements ComponentCallbacks2, Application.ActivityLifecycleCallbacks {
+    // views the pools may keep per megabyte of heap class; at roughly a kilobyte per view
+    // with its fields, background and layout params, about 1/32 of the heap
+    static final int VIEWS_PER_HEAP_MB = 32;
+    // holders a type may keep unless setMaxRecycledViews says otherwise, as in
+    // RecycledViewPool
+    private static final int DEFAULT_MAX_SCRAP = 5;
+
+    private static ViewPoolManager instance;
+
+    // null if the memory state of the system is not to be checked
+    private final ActivityManager activityManager;
+    private final ActivityManager.MemoryInfo memoryInfo = new ActivityManager.MemoryInfo();
+    // caps and counts in views
+    private final long fullBudget;
+    private long budget;
+    private long pooledViews;
+    private final ArrayList<Pool> pools = new ArrayList<>();
+    // views in one holder of each view type, counted once on the first holder put in and
+    // never changed, so that taking and evicting holders subtracts what putting them added
+    private final SparseIntArray footprints = new SparseIntArray();
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    static ViewPoolManager get(Context context) {
+        if (instance == null) {
+            Application application = (Application) context.getApplicationContext();
+            ActivityManager activityManager =
+                    (ActivityManager) application.getSystemService(Context.ACTIVITY_SERVICE);
+            instance = new ViewPoolManager(
+                    (long) activityManager.getMemoryClass() * VIEWS_PER_HEAP_MB, activityManager);
+            application.registerComponentCallbacks(instance);
+            application.registerActivityLifecycleCallbacks(instance);
+        }
+        return instance;
+    }
+
+    /**
+     * @param budget          views the pools may keep between them
+     * @param activityManager to check whether the system is low on memory before the
+     *                        budget grows back, or null not to check
+     */
+    ViewPoolManager(long budget, ActivityManager activityManager) {
+        this.fullBudget = budget;
+        this.budget = budget;
+        this.activityManager = activityManager;
+    }
+
+    /**
+     * The pool shared by the RecyclerViews of {@code activity}. It is emptied and
+     * forgotten when the activity is destroyed.
+     */
+    RecyclerView.RecycledViewPool poolFor(Activity activity) {
+        for (int i = 0; i < pools.size(); i++) {
+            if (pools.get(i).owner == activity) {
+                return pools.get(i);
+            }
+        }
+        Pool pool = new Pool(activity);
+        pools.add(pool);
+        return pool;
+    }
+
+    long hits() {
+        return hits;
+    }
+
+    long misses() {
+        return misses;
+    }
+
+    long evictions() {
+        return evictions;
+    }
+
+    long pooledViews() {
+        return pooledViews;
+    }
+
+    long budget() {
+        return budget;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "view pools: %d hits, %d misses, %d evictions, %d/%d views in %d pools",
+                hits, misses, evictions, pooledViews, budget, pools.size());
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        int shift;
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            // next in line to be killed, or the system is about to kill background apps
+            shift = Integer.SIZE;
+        } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW) {
+            shift = 2;
+        } else if (level >= TRIM_MEMORY_RUNNING_MODERATE) {
+            // covers TRIM_MEMORY_UI_HIDDEN too: nothing is bound while nothing is shown
+            shift = 1;
+        } else {
+            return;
+        }
+        shrinkBudget(shift >= Integer.SIZE ? 0 : fullBudget >> shift);
+    }
+
+    @Override
+    public void onLowMemory() {
+        shrinkBudget(0);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    @Override
+    public void onActivityStarted(Activity activity) {
+        // one step at a time, and not while the pressure that shrank it may still be on
+        if (budget >= fullBudget || isLowOnMemory()) {
+            return;
+        }
+        budget = Math.min(Math.max(budget * 2, fullBudget >> 2), fullBudget);
+    }
+
+    @Override
+    public void onActivityDestroyed(Activity activity) {
+        for (int i = 0; i < pools.size(); i++) {
+            Pool pool = pools.get(i);
+            if (pool.owner == activity) {
+                pool.clear();
+                pools.remove(i);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+    }
+
+    @Override
+    public void onActivityResumed(Activity activity) {
+    }
+
+    @Override
+    public void onActivityPaused(Activity activity) {
+    }
+
+    @Override
+    public void onActivityStopped(Activity activity) {
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+    }
+
+    private boolean isLowOnMemory() {
+        if (activityManager == null) {
+            return false;
+        }
+        activityManager.getMemoryInfo(memoryInfo);
+        return memoryInfo.lowMemory;
+    }
+
+    private void shrinkBudget(long newBudget) {
+        budget = Math.min(budget, newBudget);
+        trimTo(budget);
+    }
+
+    /**
+     * Evicts holders, from the type and pool holding the most views first, until at most
+     * {@code views} are pooled.
+     */
+    private void trimTo(long views) {
+        while (pooledViews > views) {
+            Pool largestPool = null;
+            int largestType = 0;
+            long largestViews = 0;
+            for (int i = 0; i < pools.size(); i++) {
+                Pool pool = pools.get(i);
+                for (int j = 0; j < pool.counts.size(); j++) {
+                    int viewType = pool.counts.keyAt(j);
+                    long typeViews = (long) pool.counts.valueAt(j) * footprints.get(viewType);
+                    if (typeViews > largestViews) {
+                        largestPool = pool;
+                        largestType = viewType;
+                        largestViews = typeViews;
+                    }
+                }
+            }
+            if (largestPool == null) {
+                return;
+            }
+            largestPool.evict(largestType);
+        }
+    }
+
+    private int footprintOf(RecyclerView.ViewHolder holder) {
+        int viewType = holder.getItemViewType();
+        // an inflated item view already has all its views, laid out or not
+        if (footprints.indexOfKey(viewType) < 0) {
+            footprints.put(viewType, countViews(holder.itemView));
+        }
+        return footprints.get(viewType);
+    }
+
+    /**
+     * Number of views in the tree of {@code view}, including itself.
+     */
+    private static int countViews(View view) {
+        int views = 1;
+        if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                views += countViews(group.getChildAt(i));
+            }
+        }
+        return views;
+    }
+
+    /**
+     * RecycledViewPool that counts its holders per view type, so that the manager can cap
+     * and trim it in views, and reports its hits and misses.
+     */
+    private class Pool extends RecyclerView.RecycledViewPool {
+        final Activity owner;
+        final SparseIntArray counts = new SparseIntArray();
+        // the limits set through setMaxRecycledViews()
+        private final SparseIntArray maxScrap = new SparseIntArray();
+
+        Pool(Activity owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public RecyclerView.ViewHolder getRecycledView(int viewType) {
+            RecyclerView.ViewHolder holder = super.getRecycledView(viewType);
+            if (holder == null) {
+                misses++;
+            } else {
+                hits++;
+                taken(viewType);
+            }
+            return holder;
+        }
+
+        @Override
+        public void putRecycledView(RecyclerView.ViewHolder holder) {
+            int viewType = holder.getItemViewType();
+            int footprint = footprintOf(holder);
+            int count = counts.get(viewType);
+            // each type gets at most half the budget, so that one cannot crowd out the rest
+            long typeCap = budget / 2 / footprint;
+            if (count >= Math.min(maxScrap.get(viewType, DEFAULT_MAX_SCRAP), typeCap)) {
+                // dropped, as the default pool does when it is full
+                evictions++;
+                return;
+            }
+            if (pooledViews + footprint > budget) {
+                trimTo(budget - footprint);
+                if (pooledViews + footprint > budget) {
+                    evictions++;
+                    return;
+                }
+            }
+            super.putRecycledView(holder);
+            // the trim above may have taken holders of this type too
+            counts.put(viewType, counts.get(viewType) + 1);
+            pooledViews += footprint;
+        }
+
+        @Override
+        public void setMaxRecycledViews(int viewType, int max) {
+            maxScrap.put(viewType, max);
+            super.setMaxRecycledViews(viewType, max);
+            while (counts.get(viewType) > max) {
+                evict(viewType);
+            }
+        }
+
+        @Override
+        public void clear() {
+            super.clear();
+            for (int i = 0; i < counts.size(); i++) {
+                pooledViews -= (long) counts.valueAt(i) * footprints.get(counts.keyAt(i));
+            }
+            counts.clear();
+        }
+
+        void evict(int viewType) {
+            if (super.getRecycledView(viewType) != null) {
+                evictions++;
+                taken(viewType);
+            } else {
+                counts.delete(viewType);
+            }
+        }
+
+        private void taken(int viewType) {
+            int count = counts.get(viewType) - 1;
+            if (count > 0) {
+                counts.put(viewType, count);
+            } else {
+                counts.delete(viewType);
+            }
+            pooledViews -= footprints.get(viewType);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package examples.android.com.recyclerviewanimations;
+
+import org.junit.Assume;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Counts the bytes the thread that created it allocates, for tests that check that a code
+ * path allocates nothing, or no more than something else. Only some JVMs can count them;
+ * on the others, {@link #forCurrentThread()} skips the test.
+ */
+class AllocationCounter {
+    private final com.sun.management.ThreadMXBean threads;
+    private final long threadId;
+    private long start;
+
+    private AllocationCounter(com.sun.management.ThreadMXBean threads) {
+        this.threads = threads;
+        this.threadId = Thread.currentThread().getId();
+    }
+
+    /**
+     * A counter for the calling thread, counting from now on.
+     */
+    static AllocationCounter forCurrentThread() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        Assume.assumeTrue(allocations.isThreadAllocatedMemorySupported()
+                && allocations.isThreadAllocatedMemoryEnabled());
+        AllocationCounter counter = new AllocationCounter(allocations);
+        counter.reset();
+        return counter;
+    }
+
+    /**
+     * Counts from now on.
+     */
+    void reset() {
+        start = threads.getThreadAllocatedBytes(threadId);
+    }
+
+    /**
+     * Bytes allocated since this counter was created or last reset.
+     */
+    long allocated() {
+        return threads.getThreadAllocatedBytes(threadId) - start;
+    }
+}
@@ -0,0 +1,312 @@
+package examples.android.com.recyclerviewanimations;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.RadioButton;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowChoreographer;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives MainActivity frame by frame on a paused main looper and checks that scrolling
+ * and bursts of item clicks stay within a per-frame work budget. Each frame advances the
+ * clock by one frame interval, runs what the looper has due (animations, posted updates)
+ * and then a layout traversal if one was requested; the binds, layout passes and change
+ * animation ticks it caused are counted through ItemMetrics and a counting layout manager.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class FrameBudgetTest {
+    private static final long FRAME_MS = 16;
+    private static final int WIDTH = 480;
+    private static final int HEIGHT = 800;
+
+    private static final int LARGE_LIST_SIZE = 5000;
+    // a fast fling: about 7000 px/s
+    private static final int FLING_PX_PER_FRAME = 120;
+    private static final int FLING_FRAMES = 300;
+
+    // budgets
+    private static final int MAX_BINDS_PER_FLING_FRAME = 3;
+    private static final int MAX_CREATES_PER_FLING = 4;
+    private static final int MAX_LAYOUTS_PER_FRAME = 1;
+    private static final int MAX_ANIMATION_TICKS_PER_FRAME = 1;
+    // a change animation lasts 600ms; allow a few frames to start and finish
+    private static final int MAX_CHANGE_STORM_FRAMES = (int) (2 * ChangeFrames.HALF_DURATION / FRAME_MS) + 4;
+    // removals, then moves, then additions, each a default item animation
+    private static final int MAX_ADD_DELETE_FRAMES = 60;
+    // how long the item store may take to be read on its own thread
+    private static final long STORE_TIMEOUT_MS = 5000;
+
+    private MainActivity activity;
+    private RecyclerView recyclerView;
+    private MyAdapter adapter;
+    private ItemMetrics metrics;
+    private CountingLayoutManager layoutManager;
+    private View root;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        ShadowChoreographer.setFrameInterval(TimeUnit.MILLISECONDS.toNanos(FRAME_MS));
+        ShadowLooper.pauseMainLooper();
+        activity = Robolectric.setupActivity(MainActivity.class);
+        root = activity.getWindow().getDecorView();
+        recyclerView = activity.recyclerView;
+        adapter = (MyAdapter) recyclerView.getAdapter();
+        // the warm-up has only been posted so far; have it fill the pool on the main
+        // thread, so that the pool is full by the end of settle() below rather than
+        // whenever a background inflater gets to it
+        activity.viewHolderWarmUp.setInflater(ViewHolderWarmUp.inflateOnUiThread());
+        // clicks go through the mutation pipeline; run its worker right away so that
+        // their batches are posted by the time the next frame runs
+        adapter.getItems().setMutationExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        layoutManager = new CountingLayoutManager(activity);
+        recyclerView.setLayoutManager(layoutManager);
+        metrics = activity.metrics;
+        metrics.setEnabled(true);
+        awaitList();
+        // first layout, view holder warm-up and whatever else startup posted
+        settle(10);
+        metrics.reset();
+    }
+
+    @Test
+    public void flingOverLargeListStaysWithinBudget() {
+        adapter.getItems().addAll(randomColors(LARGE_LIST_SIZE));
+        settle(MAX_ADD_DELETE_FRAMES);
+        metrics.reset();
+
+        int creates = 0;
+        for (int i = 0; i < FLING_FRAMES; i++) {
+            recyclerView.scrollBy(0, FLING_PX_PER_FRAME);
+            Frame frame = frame();
+            assertTrue("frame " + i + ": " + frame, frame.binds <= MAX_BINDS_PER_FLING_FRAME);
+            assertTrue("frame " + i + ": " + frame, frame.layouts <= MAX_LAYOUTS_PER_FRAME);
+            creates += frame.creates;
+        }
+        assertTrue("did not scroll", layoutManager.findFirstVisibleItemPosition() > 0);
+        assertTrue("created " + creates + " holders while flinging",
+                creates <= MAX_CREATES_PER_FLING);
+    }
+
+    @Test
+    public void changeStormStaysWithinBudget() {
+        check(R.id.changeRB);
+        int clicked = clickAllVisible();
+        assertTrue(clicked > 0);
+
+        int frames = runUntilIdle(MAX_CHANGE_STORM_FRAMES, clicked);
+        assertTrue("took " + frames + " frames", frames <= MAX_CHANGE_STORM_FRAMES);
+        ItemMetrics.Snapshot snapshot = metrics.snapshot();
+        // payload binds only, one per changed item
+        assertEquals(clicked, snapshot.bind.count);
+        assertEquals(clicked, snapshot.animationStarts);
+        assertEquals(0, snapshot.runningAnimations);
+    }
+
+    @Test
+    public void interruptedChangesDoNotPileUp() {
+        check(R.id.changeRB);
+        int clicked = 0;
+        for (int i = 0; i < 5; i++) {
+            clicked = clickAllVisible();
+            Frame frame = frame();
+            assertTrue(frame.toString(), frame.animationTicks <= MAX_ANIMATION_TICKS_PER_FRAME);
+            assertTrue(frame.toString(), frame.animationUpdates <= clicked);
+        }
+        runUntilIdle(MAX_CHANGE_STORM_FRAMES, clicked);
+
+        ItemMetrics.Snapshot snapshot = metrics.snapshot();
+        assertTrue(snapshot.toString(), snapshot.animationInterrupts > 0);
+        // each item only ever runs one change animation at a time
+        assertTrue(snapshot.toString(), snapshot.runningAnimationsHighWater <= clicked);
+        assertEquals(0, snapshot.runningAnimations);
+    }
+
+    @Test
+    public void addAndDeleteBurstsStayWithinBudget() {
+        check(R.id.addRB);
+        int added = clickFirstVisible(5);
+        Frame frame = frame();
+        assertTrue(frame.toString(), frame.binds <= added);
+        int frames = runUntilIdle(MAX_ADD_DELETE_FRAMES, 0);
+        assertTrue("took " + frames + " frames", frames <= MAX_ADD_DELETE_FRAMES);
+
+        check(R.id.deleteRB);
+        int deleted = clickFirstVisible(5);
+        frame = frame();
+        // every removed item uncovers at most one item at the bottom
+        assertTrue(frame.toString(), frame.binds <= deleted);
+        frames = runUntilIdle(MAX_ADD_DELETE_FRAMES, 0);
+        assertTrue("took " + frames + " frames", frames <= MAX_ADD_DELETE_FRAMES);
+        assertEquals(100, adapter.getItemCount());
+    }
+
+    /**
+     * Runs frames until no item animation is running, checking the per-frame budget.
+     *
+     * @param maxAnimating most change animations a frame may advance, or 0 for any
+     * @return the number of frames it took
+     */
+    private int runUntilIdle(int maxFrames, int maxAnimating) {
+        int frames = 0;
+        do {
+            Frame frame = frame();
+            frames++;
+            assertTrue("frame " + frames + ": " + frame,
+                    frame.layouts <= MAX_LAYOUTS_PER_FRAME);
+            assertTrue("frame " + frames + ": " + frame,
+                    frame.animationTicks <= MAX_ANIMATION_TICKS_PER_FRAME);
+            if (maxAnimating > 0) {
+                assertTrue("frame " + frames + ": " + frame,
+                        frame.animationUpdates <= maxAnimating);
+            }
+        } while (recyclerView.getItemAnimator().isRunning() && frames <= maxFrames);
+        assertFalse("still animating after " + frames + " frames",
+                recyclerView.getItemAnimator().isRunning());
+        return frames;
+    }
+
+    /**
+     * Runs frames until the list is shown, which it is once the item store has been read
+     * on its own thread.
+     */
+    private void awaitList() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + STORE_TIMEOUT_MS;
+        while (adapter.getItemCount() == 0) {
+            assertTrue("the item store was not read", System.currentTimeMillis() < deadline);
+            Thread.sleep(FRAME_MS);
+            frame();
+        }
+    }
+
+    private void settle(int frames) {
+        for (int i = 0; i < frames; i++) {
+            frame();
+        }
+    }
+
+    private Frame frame() {
+        ItemMetrics.Snapshot before = metrics.snapshot();
+        int layoutsBefore = layoutManager.layouts;
+        ShadowLooper.idleMainLooper(FRAME_MS, TimeUnit.MILLISECONDS);
+        if (root.isLayoutRequested()) {
+            root.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+            root.layout(0, 0, WIDTH, HEIGHT);
+        }
+        ItemMetrics.Snapshot after = metrics.snapshot();
+        return new Frame(after.bind.count - before.bind.count,
+                after.create.count - before.create.count,
+                layoutManager.layouts - layoutsBefore,
+                after.animationFrames - before.animationFrames,
+                after.animationUpdates - before.animationUpdates);
+    }
+
+    private void check(int radioButtonId) {
+        ((RadioButton) activity.findViewById(radioButtonId)).setChecked(true);
+    }
+
+    private int clickAllVisible() {
+        return clickFirstVisible(recyclerView.getChildCount());
+    }
+
+    private int clickFirstVisible(int count) {
+        // collect first: add and delete clicks change the children
+        View[] children = new View[Math.min(count, recyclerView.getChildCount())];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = recyclerView.getChildAt(i);
+        }
+        for (View child : children) {
+            tap(child);
+        }
+        return children.length;
+    }
+
+    /**
+     * Taps the middle of {@code child}; clicks are detected on the RecyclerView, see
+     * ItemClickSupport.
+     */
+    private void tap(View child) {
+        float x = child.getLeft() + child.getWidth() / 2f;
+        float y = child.getTop() + child.getHeight() / 2f;
+        long downTime = SystemClock.uptimeMillis();
+        MotionEvent down = MotionEvent.obtain(downTime, downTime, MotionEvent.ACTION_DOWN, x, y, 0);
+        MotionEvent up = MotionEvent.obtain(downTime, downTime + 50, MotionEvent.ACTION_UP, x, y, 0);
+        recyclerView.dispatchTouchEvent(down);
+        recyclerView.dispatchTouchEvent(up);
+        down.recycle();
+        up.recycle();
+    }
+
+    private static int[] randomColors(int count) {
+        Random random = new Random(42);
+        int[] colors = new int[count];
+        for (int i = 0; i < count; i++) {
+            colors[i] = random.nextInt() | 0xff000000;
+        }
+        return colors;
+    }
+
+    private static class Frame {
+        final long binds;
+        final long creates;
+        final int layouts;
+        final long animationTicks;
+        final long animationUpdates;
+
+        Frame(long binds, long creates, int layouts, long animationTicks, long animationUpdates) {
+            this.binds = binds;
+            this.creates = creates;
+            this.layouts = layouts;
+            this.animationTicks = animationTicks;
+            this.animationUpdates = animationUpdates;
+        }
+
+        @Override
+        public String toString() {
+            return "binds=" + binds + " creates=" + creates + " layouts=" + layouts
+                    + " animationTicks=" + animationTicks + " animationUpdates=" + animationUpdates;
+        }
+    }
+
+    private static class CountingLayoutManager extends LinearLayoutManager {
+        int layouts;
+
+        CountingLayoutManager(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void onLayoutChildren(RecyclerView.Recycler recycler, RecyclerView.State state) {
+            // pre- and post-layout of one pass count once
+            if (!state.isPreLayout()) {
+                layouts++;
+            }
+            super.onLayoutChildren(recycler, state);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package examples.android.com.recyclerviewanimations;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Plain JVM tests of IdIndex: lookups between random edits match a linear search, and
+ * edits it is told about do not make it rebuild its table.
+ */
+public class IdIndexTest {
+
+    @Test
+    public void followsRandomEdits() {
+        Random random = new Random(42);
+        LongList ids = new LongList();
+        long nextId = 0;
+        for (int i = 0; i < 500; i++) {
+            ids.add(nextId++);
+        }
+        IdIndex index = new IdIndex();
+        for (int step = 0; step < 20000; step++) {
+            int size = ids.size();
+            switch (random.nextInt(6)) {
+                case 0:
+                    int position = random.nextInt(size + 1);
+                    ids.add(position, nextId++);
+                    index.onInserted(ids, position, 1);
+                    break;
+                case 1:
+                    if (size > 0) {
+                        position = random.nextInt(size);
+                        ids.remove(position);
+                        index.onRemoved(ids, position, 1);
+                    }
+                    break;
+                case 2:
+                    if (size > 0) {
+                        int from = random.nextInt(size);
+                        int to = random.nextInt(size);
+                        ids.move(from, to);
+                        index.onMoved(ids, from, to);
+                    }
+                    break;
+                case 3:
+                    position = random.nextInt(size + 1);
+                    int count = random.nextInt(4);
+                    long[] added = new long[count];
+                    for (int i = 0; i < count; i++) {
+                        added[i] = nextId++;
+                    }
+                    ids.addAll(position, added, 0, count);
+                    index.onInserted(ids, position, count);
+                    break;
+                case 4:
+                    position = random.nextInt(size + 1);
+                    count = random.nextInt(Math.min(4, size - position) + 1);
+                    ids.removeRange(position, count);
+                    index.onRemoved(ids, position, count);
+                    break;
+                case 5:
+                    LongList copy = ids.copy();
+                    index.onCopied(ids, copy);
+                    ids = copy;
+                    break;
+            }
+            // ids that are there, and some that have been removed
+            for (int i = 0; i < 3; i++) {
+                long id = (long) (random.nextDouble() * nextId);
+                assertEquals("step " + step, linearSearch(ids, id), index.positionOf(id, ids));
+            }
+        }
+    }
+
+    @Test
+    public void reportedEditsDoNotRebuild() {
+        int size = 100000;
+        LongList ids = new LongList(size);
+        for (int i = 0; i < size; i++) {
+            ids.add(i);
+        }
+        IdIndex index = new IdIndex();
+        assertEquals(0, index.positionOf(0, ids));
+        Random random = new Random(7);
+        int edits = 10000;
+        for (int i = 0; i < edits; i++) {
+            // insert in front of an item, then look up the one behind it
+            long id = ids.get(random.nextInt(ids.size()));
+            int position = index.positionOf(id, ids);
+            ids.add(position, size + i);
+            index.onInserted(ids, position, 1);
+            assertEquals(position + 1, index.positionOf(id, ids));
+        }
+        // about one rebuild per sqrt(n) edits, rather than one per edit
+        int maxRebuilds = 1 + edits / (int) Math.sqrt(size) + 1;
+        assertTrue("rebuilt " + index.rebuildCount() + " times",
+                index.rebuildCount() <= maxRebuilds);
+    }
+
+    @Test
+    public void followsRunOfEditsReportedAfterwards() {
+        Random random = new Random(11);
+        LongList ids = new LongList();
+        long nextId = 0;
+        for (int i = 0; i < 200; i++) {
+            ids.add(nextId++);
+        }
+        IdIndex index = new IdIndex();
+        for (int run = 0; run < 500; run++) {
+            assertEquals(0, index.positionOf(ids.get(0), ids));
+            // a copy is edited a few times, then the index told about all of it, the way
+            // the main thread's index follows a pipeline batch
+            LongList copy = ids.copy();
+            IntList edits = new IntList();
+            for (int i = random.nextInt(6); i > 0; i--) {
+                if (random.nextBoolean() || copy.size() == 0) {
+                    int position = random.nextInt(copy.size() + 1);
+                    copy.add(position, nextId);
+                    edits.add(position);
+                    edits.add((int) nextId++);
+                } else {
+                    int position = random.nextInt(copy.size());
+                    copy.remove(position);
+                    edits.add(position);
+                    edits.add(-1);
+                }
+            }
+            for (int i = 0; i < edits.size(); i += 2) {
+                if (edits.get(i + 1) >= 0) {
+                    index.onInsertedId(copy, edits.get(i), edits.get(i + 1));
+                } else {
+                    index.onRemoved(copy, edits.get(i), 1);
+                }
+            }
+            ids = copy;
+            for (int i = 0; i < 5; i++) {
+                long id = (long) (random.nextDouble() * nextId);
+                assertEquals("run " + run, linearSearch(ids, id), index.positionOf(id, ids));
+            }
+        }
+    }
+
+    @Test
+    public void unreportedEditRebuilds() {
+        LongList ids = new LongList();
+        for (int i = 0; i < 10; i++) {
+            ids.add(i);
+        }
+        IdIndex index = new IdIndex();
+        assertEquals(3, index.positionOf(3, ids));
+        ids.remove(0);
+        assertEquals(2, index.positionOf(3, ids));
+        assertEquals(-1, index.positionOf(0, ids));
+    }
+
+    private static int linearSearch(LongList ids, long id) {
+        for (int i = 0; i < ids.size(); i++) {
+            if (ids.get(i) == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
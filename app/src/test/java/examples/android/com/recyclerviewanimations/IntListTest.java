@@ -0,0 +1,223 @@
+package examples.android.com.recyclerviewanimations;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Plain JVM tests of IntList's range operations and their bounds checks, and of the
+ * allocation-free reads that binding relies on.
+ */
+public class IntListTest {
+
+    @Test
+    public void addInsertsAndGrows() {
+        IntList list = new IntList(1);
+        for (int i = 0; i < 100; i++) {
+            list.add(i);
+        }
+        list.add(0, -1);
+        list.add(101, 100);
+        assertEquals(102, list.size());
+        assertEquals(-1, list.get(0));
+        assertEquals(0, list.get(1));
+        assertEquals(100, list.get(101));
+    }
+
+    @Test
+    public void addAllInsertsRange() {
+        IntList list = of(0, 1, 2);
+        list.addAll(1, new int[]{7, 8, 9, 10}, 1, 2);
+        assertArrayEquals(new int[]{0, 8, 9, 1, 2}, list.toArray());
+        list.addAll(5, new int[]{3}, 0, 1);
+        list.addAll(0, new int[0], 0, 0);
+        assertArrayEquals(new int[]{0, 8, 9, 1, 2, 3}, list.toArray());
+    }
+
+    @Test
+    public void removeRangeShiftsRest() {
+        IntList list = of(0, 1, 2, 3, 4, 5);
+        list.removeRange(1, 2);
+        assertArrayEquals(new int[]{0, 3, 4, 5}, list.toArray());
+        list.removeRange(4, 0);
+        list.removeRange(2, 2);
+        assertArrayEquals(new int[]{0, 3}, list.toArray());
+        assertEquals(3, list.remove(1));
+        assertArrayEquals(new int[]{0}, list.toArray());
+    }
+
+    @Test
+    public void moveShiftsItemsInBetween() {
+        IntList list = of(0, 1, 2, 3, 4);
+        list.move(0, 3);
+        assertArrayEquals(new int[]{1, 2, 3, 0, 4}, list.toArray());
+        list.move(4, 0);
+        assertArrayEquals(new int[]{4, 1, 2, 3, 0}, list.toArray());
+        list.move(2, 2);
+        assertArrayEquals(new int[]{4, 1, 2, 3, 0}, list.toArray());
+    }
+
+    @Test
+    public void copyIsIndependent() {
+        IntList list = of(0, 1, 2);
+        IntList copy = list.copy();
+        list.set(0, 5);
+        copy.add(3);
+        assertArrayEquals(new int[]{5, 1, 2}, list.toArray());
+        assertArrayEquals(new int[]{0, 1, 2, 3}, copy.toArray());
+    }
+
+    @Test
+    public void everyEditCountsAsModification() {
+        IntList list = of(0, 1, 2);
+        int modCount = list.modCount();
+        list.set(0, 1);
+        list.move(0, 2);
+        list.removeRange(0, 1);
+        list.clear();
+        assertEquals(modCount + 4, list.modCount());
+    }
+
+    @Test
+    public void outOfBoundsIndicesThrow() {
+        final IntList list = of(0, 1, 2);
+        assertThrows(new Runnable() {
+            @Override
+            public void run() {
+                list.get(3);
+            }
+        });
+        assertThrows(new Runnable() {
+            @Override
+            public void run() {
+                list.get(-1);
+            }
+        });
+        assertThrows(new Runnable() {
+            @Override
+            public void run() {
+                list.set(3, 0);
+            }
+        });
+        assertThrows(new Runnable() {
+            @Override
+            public void run() {
+                list.add(4, 0);
+            }
+        });
+        assertThrows(new Runnable() {
+            @Override
+            public void run() {
+                list.remove(3);
+            }
+        });
+        assertThrows(new Runnable() {
+            @Override
+            public void run() {
+                list.move(0, 3);
+            }
+        });
+        assertThrows(new Runnable() {
+            @Override
+            public void run() {
+                list.move(-1, 0);
+            }
+        });
+        assertThrows(new Runnable() {
+            @Override
+            public void run() {
+                list.addAll(4, new int[]{1}, 0, 1);
+            }
+        });
+        assertThrows(new Runnable() {
+            @Override
+            public void run() {
+                list.addAll(0, new int[]{1}, 1, 1);
+            }
+        });
+        assertThrows(new Runnable() {
+            @Override
+            public void run() {
+                // would wrap around to a negative end
+                list.addAll(0, new int[]{1}, 1, Integer.MAX_VALUE);
+            }
+        });
+        assertThrows(new Runnable() {
+            @Override
+            public void run() {
+                list.removeRange(2, 2);
+            }
+        });
+        assertThrows(new Runnable() {
+            @Override
+            public void run() {
+                list.removeRange(1, Integer.MAX_VALUE);
+            }
+        });
+        assertThrows(new Runnable() {
+            @Override
+            public void run() {
+                list.removeRange(0, -1);
+            }
+        });
+        assertThrows(new Runnable() {
+            @Override
+            public void run() {
+                list.toArray(2, 1);
+            }
+        });
+        // and none of them changed the list
+        assertArrayEquals(new int[]{0, 1, 2}, list.toArray());
+    }
+
+    @Test
+    public void readsForBindingDoNotAllocate() {
+        AllocationCounter allocations = AllocationCounter.forCurrentThread();
+        ItemList items = new ItemList(new RecordingCallback(), new QueueExecutor(),
+                new QueueExecutor(), new QueueExecutor(), new QueueExecutor());
+        int[] colors = new int[100000];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = i;
+        }
+        items.addAll(colors);
+        // with items dismissed, positions go through the tombstones as well
+        items.dismissDeferred(10);
+        items.dismissDeferred(50000);
+        long sum = bindAll(items);
+        allocations.reset();
+        sum += bindAll(items);
+        long allocated = allocations.allocated();
+        assertTrue("sum " + sum, sum > 0);
+        // the counter itself may allocate a little, but nowhere near a byte per bind
+        assertTrue("allocated " + allocated + " bytes", allocated < items.size() / 10);
+    }
+
+    /**
+     * What binding every item reads, as the adapter does.
+     */
+    private static long bindAll(ItemList items) {
+        long sum = 0;
+        for (int i = 0; i < items.size(); i++) {
+            sum += items.colorAt(i) + items.idAt(i);
+        }
+        return sum;
+    }
+
+    private static IntList of(int... values) {
+        IntList list = new IntList();
+        list.addAll(values);
+        return list;
+    }
+
+    private static void assertThrows(Runnable call) {
+        try {
+            call.run();
+        } catch (IndexOutOfBoundsException expected) {
+            return;
+        }
+        fail("no IndexOutOfBoundsException");
+    }
+}
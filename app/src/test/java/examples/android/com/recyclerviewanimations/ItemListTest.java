@@ -0,0 +1,509 @@
+package examples.android.com.recyclerviewanimations;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Plain JVM tests of ItemList's own edits and the notifications they produce. Background
+ * work runs on queues the test runs by hand.
+ */
+public class ItemListTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final QueueExecutor worker = new QueueExecutor();
+    private final QueueExecutor diff = new QueueExecutor();
+    private final QueueExecutor store = new QueueExecutor();
+    private final QueueExecutor main = new QueueExecutor();
+    private final RecordingCallback callback = new RecordingCallback();
+    private ItemList items;
+    // id of the item of color 0 in editedColors()
+    private long firstId;
+
+    @Before
+    public void setUp() {
+        items = new ItemList(callback, worker, diff, store, main);
+        callback.items = items;
+        items.addAll(new int[20]);
+        callback.events.clear();
+    }
+
+    @Test
+    public void editsOutsideBatchAreNotifiedOneByOne() {
+        items.removeItem(5);
+        items.removeItem(5);
+        assertEquals(Arrays.asList("removed 5 1", "removed 5 1"), callback.events);
+    }
+
+    @Test
+    public void batchMergesAdjacentEdits() {
+        items.beginBatch();
+        // removals at 5, 5 and 4 cover 4..6 of the list before the batch
+        items.removeItem(5);
+        items.removeItem(5);
+        items.removeItem(4);
+        assertTrue(callback.events.isEmpty());
+        // insertions that grow one run
+        for (int i = 0; i < 10; i++) {
+            items.insertItem(10 + i, i);
+        }
+        // changes of neighbours
+        for (int i = 0; i < 10; i++) {
+            items.setItem(i, 1);
+        }
+        items.commit();
+        assertEquals(Arrays.asList("removed 4 3", "inserted 10 10", "changed 0 10"),
+                callback.events);
+        assertEquals(items.size(), callback.size);
+    }
+
+    @Test
+    public void nestedBatchesDispatchOnOutermostCommit() {
+        items.beginBatch();
+        items.removeItem(0);
+        items.beginBatch();
+        items.removeItem(0);
+        items.commit();
+        assertTrue(callback.events.isEmpty());
+        items.removeItem(0);
+        items.commit();
+        assertEquals(Arrays.asList("removed 0 3"), callback.events);
+    }
+
+    @Test
+    public void pipelineBatchAppliedInsideBatchIsMerged() {
+        items.beginBatch();
+        items.removeItem(0);
+        items.postRemove(items.idAt(0));
+        worker.runAll();
+        main.runAll();
+        items.commit();
+        assertEquals(Arrays.asList("removed 0 2"), callback.events);
+        assertEquals(18, items.size());
+    }
+
+    @Test
+    public void submittedColorsKeepIdsOfMatchingItems() {
+        int[] newColors = editedColors(50000);
+        items.submitColors(newColors);
+        // nothing changes until the diff is back on the main thread
+        assertEquals(50000, items.size());
+        diff.runAll();
+        main.runAll();
+        assertSubmitted(newColors);
+    }
+
+    @Test
+    public void submittedColorsAreDiffedAgainIfListChangedMeanwhile() {
+        int[] newColors = editedColors(50000);
+        items.submitColors(newColors);
+        diff.runAll();
+        // edited while the diff was waiting for the main thread: the diff is stale
+        items.insertItem(0, -1000);
+        main.runAll();
+        assertEquals(50001, items.size());
+        assertTrue("diffed again", diff.runAll() > 0);
+        main.runAll();
+        assertSubmitted(newColors);
+    }
+
+    @Test
+    public void newerSubmissionSupersedesOlder() {
+        items.submitColors(new int[]{1, 2, 3});
+        items.submitColors(new int[]{4, 5});
+        diff.runAll();
+        main.runAll();
+        assertEquals(2, items.size());
+        assertEquals(4, items.colorAt(0));
+        assertEquals(5, items.colorAt(1));
+        assertEquals(2, callback.size);
+    }
+
+    /**
+     * Replaces the list with {@code size} items of the colors 0 to size - 1 and returns
+     * a version of it with a few hundred items removed, added and moved. The added ones
+     * have negative colors.
+     */
+    private int[] editedColors(int size) {
+        int[] colors = new int[size];
+        for (int i = 0; i < size; i++) {
+            colors[i] = i;
+        }
+        items.clear();
+        items.addAll(colors);
+        firstId = items.idAt(0);
+        callback.events.clear();
+
+        Random random = new Random(5);
+        IntList edited = new IntList(size);
+        edited.addAll(colors);
+        for (int i = 0; i < 200; i++) {
+            edited.remove(random.nextInt(edited.size()));
+            edited.add(random.nextInt(edited.size() + 1), -2 - i);
+            edited.move(random.nextInt(edited.size()), random.nextInt(edited.size()));
+        }
+        return edited.toArray();
+    }
+
+    private void assertSubmitted(int[] newColors) {
+        assertEquals(newColors.length, items.size());
+        assertEquals(items.size(), callback.size);
+        for (int i = 0; i < newColors.length; i++) {
+            assertEquals(newColors[i], items.colorAt(i));
+            if (newColors[i] >= 0) {
+                // an item that was there before keeps its id
+                assertEquals(firstId + newColors[i], items.idAt(i));
+            }
+            assertEquals(i, items.positionOf(items.idAt(i)));
+        }
+    }
+
+    @Test
+    public void undoBringsBackDismissedItemAfterEdits() {
+        setColors(0, 1, 2, 3, 4, 5);
+        items.dismissDeferred(2);
+        items.dismissDeferred(2);
+        assertColors(0, 1, 4, 5);
+        // edits around the dismissed items keep them undoable
+        items.insertItem(2, 10);
+        items.removeItem(0);
+        items.moveItem(0, 3);
+        items.setItem(0, 11);
+        assertColors(11, 4, 5, 1);
+
+        // back between the items they were between; the insertion went in front of 4
+        assertTrue(items.undoDismiss());
+        assertColors(3, 11, 4, 5, 1);
+        assertTrue(items.undoDismiss());
+        assertColors(2, 3, 11, 4, 5, 1);
+        assertFalse(items.undoDismiss());
+        assertEquals(items.size(), callback.size);
+    }
+
+    @Test
+    public void onlyRecentDismissalsCanBeUndone() {
+        setColors(new int[40]);
+        for (int i = 0; i < 20; i++) {
+            items.dismissDeferred(0);
+        }
+        int undone = 0;
+        while (items.undoDismiss()) {
+            undone++;
+        }
+        assertEquals(16, undone);
+        assertEquals(36, items.size());
+    }
+
+    @Test
+    public void compactionKeepsUndoableItems() {
+        setColors(0, 1, 2, 3);
+        items.dismissDeferred(1);
+        items.compactDismissed(true);
+        assertTrue(items.undoDismiss());
+        assertColors(0, 1, 2, 3);
+
+        items.dismissDeferred(1);
+        items.compactDismissed(false);
+        assertFalse(items.undoDismiss());
+        assertColors(0, 2, 3);
+        // the callback was told about the removal at dismissal time
+        assertEquals(3, callback.size);
+    }
+
+    @Test
+    public void pipelineBatchIsReplayedAroundDismissedItems() {
+        setColors(0, 1, 2, 3);
+        long id1 = items.idAt(1);
+        long id2 = items.idAt(2);
+        long id3 = items.idAt(3);
+        items.dismissDeferred(1);
+        items.postInsert(id3, 10);
+        items.postSet(id2, 12);
+        // a dismissed item is gone as far as producers are concerned
+        items.postSet(id1, 11);
+        worker.runAll();
+        main.runAll();
+        assertColors(0, 12, 10, 3);
+        assertEquals(4, callback.size);
+        assertTrue(items.undoDismiss());
+        assertColors(0, 1, 12, 10, 3);
+    }
+
+    @Test
+    public void dismissalMakesPendingDiffStale() {
+        setColors(0, 1, 2, 3);
+        items.submitColors(new int[]{3, 2, 1, 0});
+        diff.runAll();
+        items.dismissDeferred(0);
+        main.runAll();
+        // the diff was against four items; it is computed again against three
+        assertEquals(3, items.size());
+        assertTrue("diffed again", diff.runAll() > 0);
+        main.runAll();
+        assertColors(3, 2, 1, 0);
+        assertEquals(4, callback.size);
+    }
+
+    @Test
+    public void undoMakesPendingDiffStale() {
+        setColors(0, 1, 2, 3);
+        items.dismissDeferred(0);
+        items.submitColors(new int[]{3, 2});
+        diff.runAll();
+        // too late: submitColors() removed the dismissed item for good
+        assertFalse(items.undoDismiss());
+        items.dismissDeferred(0);
+        assertTrue(items.undoDismiss());
+        main.runAll();
+        assertTrue("diffed again", diff.runAll() > 0);
+        main.runAll();
+        assertColors(3, 2);
+        assertEquals(2, callback.size);
+    }
+
+    @Test
+    public void storeIsReadOffMainThreadAndRestoresList() throws IOException {
+        File file = new File(folder.getRoot(), "items.bin");
+        setColors(0, 1, 2);
+        items.attachStore(file, new int[]{5, 6});
+        assertTrue(main.isEmpty());
+        store.runAll();
+        main.runAll();
+        // nothing stored yet, so the list stays and is given to the store on the next save
+        assertTrue(callback.events.isEmpty());
+        assertColors(0, 1, 2);
+        items.save();
+        store.runAll();
+        items.insertItem(0, 9);
+        items.moveItem(3, 1);
+        items.save();
+        store.runAll();
+        ItemStore detached = items.detachStore();
+        store.runAll();
+        detached.close();
+
+        RecordingCallback restoredCallback = new RecordingCallback();
+        ItemList restored = new ItemList(restoredCallback, worker, diff, store, main);
+        restoredCallback.items = restored;
+        restored.attachStore(file, new int[]{5, 6});
+        store.runAll();
+        main.runAll();
+        assertEquals(Arrays.asList("inserted 0 4"), restoredCallback.events);
+        assertEquals(4, restored.size());
+        long largestId = 0;
+        for (int i = 0; i < 4; i++) {
+            assertEquals(items.colorAt(i), restored.colorAt(i));
+            assertEquals(items.idAt(i), restored.idAt(i));
+            largestId = Math.max(largestId, items.idAt(i));
+        }
+        // ids handed out after the restore do not collide with the stored ones
+        restored.insertItem(0, 5);
+        assertTrue(restored.idAt(0) > largestId);
+    }
+
+    @Test
+    public void newListStartsWithInitialColorsOnceStoreIsRead() throws IOException {
+        File file = new File(folder.getRoot(), "items.bin");
+        ItemList list = new ItemList(callback, worker, diff, store, main);
+        callback.items = list;
+        callback.size = 0;
+        list.attachStore(file, new int[]{5, 6});
+        assertEquals(0, list.size());
+        store.runAll();
+        main.runAll();
+        assertEquals(Arrays.asList("inserted 0 2"), callback.events);
+        list.save();
+        store.runAll();
+        list.detachStore();
+        store.runAll();
+
+        ItemStore reopened = ItemStore.open(file);
+        assertArrayEquals(new int[]{5, 6}, reopened.copyColors().toArray());
+        reopened.close();
+    }
+
+    @Test
+    public void editsWhileStoreIsOpeningReplaceStoredList() throws IOException {
+        File file = new File(folder.getRoot(), "items.bin");
+        writeStore(file, 10, 11, 12);
+        ItemList list = new ItemList(callback, worker, diff, store, main);
+        callback.items = list;
+        callback.size = 0;
+        list.attachStore(file, new int[]{5, 6});
+        list.addAll(new int[]{9});
+        store.runAll();
+        main.runAll();
+        assertEquals(Arrays.asList("inserted 0 1"), callback.events);
+        assertEquals(1, list.size());
+        assertEquals(9, list.colorAt(0));
+        list.save();
+        store.runAll();
+        list.detachStore();
+        store.runAll();
+
+        ItemStore reopened = ItemStore.open(file);
+        assertArrayEquals(new int[]{9}, reopened.copyColors().toArray());
+        reopened.close();
+    }
+
+    @Test
+    public void storedListReplacingFilledListTakesNewIds() throws IOException {
+        File file = new File(folder.getRoot(), "items.bin");
+        // ids 0..2, which the list from setUp() has handed out as well
+        writeStore(file, 10, 11, 12);
+        long firstId = items.idAt(0);
+        items.postSet(firstId, 99);
+        items.attachStore(file, new int[]{5, 6});
+        store.runAll();
+        // the batch reaches the main thread after the stored list
+        worker.runAll();
+        main.runAll();
+        assertEquals(Arrays.asList("data set changed"), callback.events);
+        assertColors(10, 11, 12);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(items.idAt(i) >= 20);
+        }
+        assertEquals(-1, items.positionOf(firstId));
+    }
+
+    @Test
+    public void corruptStoreIsReplaced() throws IOException {
+        File file = new File(folder.getRoot(), "items.bin");
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.write(new byte[64]);
+        raf.close();
+        ItemList list = new ItemList(callback, worker, diff, store, main);
+        callback.items = list;
+        callback.size = 0;
+        list.attachStore(file, new int[]{5, 6});
+        store.runAll();
+        main.runAll();
+        assertEquals(Arrays.asList("store failed", "inserted 0 2"), callback.events);
+        list.save();
+        store.runAll();
+        list.detachStore();
+        store.runAll();
+
+        ItemStore reopened = ItemStore.open(file);
+        assertArrayEquals(new int[]{5, 6}, reopened.copyColors().toArray());
+        reopened.close();
+    }
+
+    @Test
+    public void storeThatCannotBeReadIsKept() throws IOException {
+        File file = new File(folder.getRoot(), "items.bin");
+        writeStore(file, 10, 11, 12);
+        // not corrupt, but cannot be opened for now
+        File log = ItemStore.logFile(file);
+        assertTrue(log.delete() && log.mkdir());
+        ItemList list = new ItemList(callback, worker, diff, store, main);
+        callback.items = list;
+        callback.size = 0;
+        list.attachStore(file, new int[]{5, 6});
+        store.runAll();
+        main.runAll();
+        assertEquals(Arrays.asList("store failed", "inserted 0 2"), callback.events);
+        // with nothing attached, nothing is saved over the stored list
+        list.save();
+        assertEquals(null, list.detachStore());
+        assertTrue(log.delete());
+
+        ItemStore reopened = ItemStore.open(file);
+        assertArrayEquals(new int[]{10, 11, 12}, reopened.copyColors().toArray());
+        reopened.close();
+    }
+
+    @Test
+    public void storeDetachedWhileOpeningIsNotInstalled() throws IOException {
+        File file = new File(folder.getRoot(), "items.bin");
+        ItemStore stored = ItemStore.open(file);
+        stored.replace(new IntList(), new LongList(), 1);
+        stored.close();
+        setColors(0, 1, 2);
+        items.attachStore(file, new int[]{5, 6});
+        assertEquals(null, items.detachStore());
+        store.runAll();
+        main.runAll();
+        // closed on the store executor instead
+        assertEquals(1, store.runAll());
+        assertTrue(callback.events.isEmpty());
+        assertColors(0, 1, 2);
+    }
+
+    @Test
+    public void listsLentToStoreAreNotReused() throws IOException {
+        File file = new File(folder.getRoot(), "items.bin");
+        setColors(0, 1, 2);
+        items.attachStore(file, new int[]{5, 6});
+        store.runAll();
+        main.runAll();
+        // the store reads the lists on its own executor, after these edits
+        items.save();
+        items.postInsert(items.idAt(0), 7);
+        worker.runAll();
+        main.runAll();
+        items.postSet(items.idAt(1), 8);
+        worker.runAll();
+        main.runAll();
+        items.setItem(3, 6);
+        assertColors(7, 8, 1, 6);
+        store.runAll();
+        items.save();
+        store.runAll();
+        ItemStore detached = items.detachStore();
+        store.runAll();
+        detached.close();
+
+        ItemStore reopened = ItemStore.open(file);
+        assertArrayEquals(new int[]{7, 8, 1, 6}, reopened.copyColors().toArray());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(items.idAt(i), reopened.copyIds().get(i));
+        }
+        reopened.close();
+    }
+
+    private static void writeStore(File file, int... colors) throws IOException {
+        IntList storedColors = new IntList();
+        LongList storedIds = new LongList();
+        for (int i = 0; i < colors.length; i++) {
+            storedColors.add(colors[i]);
+            storedIds.add(i);
+        }
+        ItemStore stored = ItemStore.open(file);
+        stored.replace(storedColors, storedIds, colors.length);
+        stored.close();
+    }
+
+    private void setColors(int... colors) {
+        items.clear();
+        items.addAll(colors);
+        callback.events.clear();
+    }
+
+    private void assertColors(int... expected) {
+        int[] actual = new int[items.size()];
+        for (int i = 0; i < actual.length; i++) {
+            actual[i] = items.colorAt(i);
+        }
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void commitWithoutBatchThrows() {
+        items.commit();
+    }
+}
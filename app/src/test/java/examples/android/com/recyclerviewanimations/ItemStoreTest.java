@@ -0,0 +1,288 @@
+package examples.android.com.recyclerviewanimations;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Plain JVM tests of ItemStore, including recovery from a crash at each step of a save.
+ * A crash is simulated by stopping a save part way and damaging the files the way an
+ * interrupted write would, then opening the store again.
+ */
+public class ItemStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "items.bin");
+    }
+
+    @Test
+    public void newStoreIsEmpty() throws IOException {
+        ItemStore store = ItemStore.open(file);
+        assertEquals(0, store.size());
+        assertEquals(0, store.nextId());
+        store.close();
+    }
+
+    @Test
+    public void replacedListSurvivesReopening() throws IOException {
+        ItemStore store = ItemStore.open(file);
+        store.replace(colors(10, 11, 12), ids(0, 1, 2), 3);
+        store.close();
+
+        assertStored(3, ids(0, 1, 2), colors(10, 11, 12));
+    }
+
+    @Test
+    public void appendedEditsSurviveReopening() throws IOException {
+        ItemStore store = ItemStore.open(file);
+        store.replace(colors(10, 11, 12, 13), ids(0, 1, 2, 3), 4);
+        ItemStore.Edits edits = new ItemStore.Edits();
+        edits.inserted(0, 4, 14);
+        edits.changed(2, 21);
+        edits.moved(4, 1);
+        edits.removed(3, 1);
+        store.append(edits, 5);
+        edits.clear();
+        // the range form reads the inserted items out of the list they went into
+        edits.inserted(3, ids(4, 3, 0, 5, 6, 2), colors(14, 13, 10, 15, 16, 12), 2);
+        store.append(edits, 7);
+        store.close();
+
+        assertStored(7, ids(4, 3, 0, 5, 6, 2), colors(14, 13, 10, 15, 16, 12));
+    }
+
+    @Test
+    public void editAtTheFrontOnlyAppendsTheEdit() throws IOException {
+        int count = 100000;
+        ItemStore store = ItemStore.open(file);
+        IntList colors = new IntList();
+        LongList ids = new LongList();
+        for (int i = 0; i < count; i++) {
+            colors.add(i);
+            ids.add(i);
+        }
+        store.replace(colors, ids, count);
+        long snapshotSize = file.length();
+        ItemStore.Edits edits = new ItemStore.Edits();
+        edits.inserted(0, count, -1);
+        store.append(edits, count + 1);
+        store.close();
+
+        // the snapshot is untouched, and the log holds one small record
+        assertEquals(snapshotSize, file.length());
+        assertTrue(ItemStore.logFile(file).length() < 100);
+        store = ItemStore.open(file);
+        assertEquals(count + 1, store.size());
+        assertEquals(count, store.copyIds().get(0));
+        assertEquals(0, store.copyIds().get(1));
+        store.close();
+    }
+
+    @Test
+    public void longLogIsFoldedIntoSnapshot() throws IOException {
+        ItemStore store = ItemStore.open(file);
+        store.replace(colors(0), ids(0), 1);
+        ItemStore.Edits edits = new ItemStore.Edits();
+        long nextId = 1;
+        long largestLog = 0;
+        for (int i = 0; i < 5000; i++) {
+            edits.clear();
+            edits.inserted(0, nextId, (int) nextId);
+            nextId++;
+            store.append(edits, nextId);
+            largestLog = Math.max(largestLog, ItemStore.logFile(file).length());
+        }
+        store.close();
+
+        assertTrue("log grew to " + largestLog, largestLog <= 64 * 1024 + 100);
+        long[] expectedIds = new long[(int) nextId];
+        int[] expectedColors = new int[(int) nextId];
+        for (int i = 0; i < nextId; i++) {
+            expectedIds[i] = nextId - 1 - i;
+            expectedColors[i] = (int) (nextId - 1 - i);
+        }
+        assertStored(nextId, expectedIds, expectedColors);
+    }
+
+    @Test
+    public void tornRecordIsDropped() throws IOException {
+        ItemStore store = ItemStore.open(file);
+        store.replace(colors(10, 11), ids(0, 1), 2);
+        ItemStore.Edits edits = new ItemStore.Edits();
+        edits.changed(0, 20);
+        store.append(edits, 2);
+        long goodLength = ItemStore.logFile(file).length();
+        edits.clear();
+        edits.changed(1, 21);
+        store.append(edits, 2);
+        store.close();
+        // crash while the last record was being written: its tail never reached the disk
+        truncate(ItemStore.logFile(file), ItemStore.logFile(file).length() - 5);
+
+        assertStored(2, ids(0, 1), colors(20, 11));
+        // and the next save goes where the torn record was
+        assertEquals(goodLength, ItemStore.logFile(file).length());
+        store = ItemStore.open(file);
+        edits.clear();
+        edits.changed(1, 31);
+        store.append(edits, 2);
+        store.close();
+        assertStored(2, ids(0, 1), colors(20, 31));
+    }
+
+    @Test
+    public void corruptRecordIsDropped() throws IOException {
+        ItemStore store = ItemStore.open(file);
+        store.replace(colors(10, 11), ids(0, 1), 2);
+        long goodLength = ItemStore.logFile(file).length();
+        ItemStore.Edits edits = new ItemStore.Edits();
+        edits.inserted(2, 2, 12);
+        store.append(edits, 3);
+        store.close();
+        // the record is complete in length, but a block of it never made it
+        overwrite(ItemStore.logFile(file), goodLength + 12, 0x55);
+
+        assertStored(2, ids(0, 1), colors(10, 11));
+    }
+
+    @Test
+    public void unfinishedSnapshotIsIgnored() throws IOException {
+        ItemStore store = ItemStore.open(file);
+        store.replace(colors(10, 11), ids(0, 1), 2);
+        store.close();
+        // crash while a new snapshot was being written, before it replaced the old one
+        RandomAccessFile temp = new RandomAccessFile(new File(file.getPath() + ".tmp"), "rw");
+        temp.write(new byte[]{1, 2, 3});
+        temp.close();
+
+        assertStored(2, ids(0, 1), colors(10, 11));
+    }
+
+    @Test
+    public void recordsInNewSnapshotAreNotReplayedAgain() throws IOException {
+        ItemStore store = ItemStore.open(file);
+        store.replace(colors(10, 11), ids(0, 1), 2);
+        ItemStore.Edits edits = new ItemStore.Edits();
+        edits.inserted(0, 2, 12);
+        store.append(edits, 3);
+        // crash after the new snapshot replaced the old one, before the log was emptied
+        store.writeSnapshot();
+        store.close();
+        assertTrue(ItemStore.logFile(file).length() > 0);
+
+        assertStored(3, ids(2, 0, 1), colors(12, 10, 11));
+    }
+
+    @Test
+    public void recordThatDoesNotFitTheListIsDropped() throws IOException {
+        ItemStore store = ItemStore.open(file);
+        store.replace(colors(10, 11, 12), ids(0, 1, 2), 3);
+        ItemStore.Edits edits = new ItemStore.Edits();
+        edits.changed(0, 20);
+        store.append(edits, 3);
+        long goodLength = ItemStore.logFile(file).length();
+        edits.clear();
+        edits.removed(2, 1);
+        store.append(edits, 3);
+        store.close();
+        // a snapshot of one item that the log was not written against, yet whose sequence
+        // the records follow on from
+        File other = new File(folder.getRoot(), "other.bin");
+        ItemStore otherStore = ItemStore.open(other);
+        otherStore.replace(colors(30), ids(0), 1);
+        otherStore.close();
+        Files.copy(other.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        // the first record still fits; the second, and anything after it, is cut off
+        assertStored(3, ids(0), colors(20));
+        assertEquals(goodLength, ItemStore.logFile(file).length());
+    }
+
+    @Test(expected = ItemStore.CorruptException.class)
+    public void brokenSnapshotFailsToOpen() throws IOException {
+        ItemStore store = ItemStore.open(file);
+        store.replace(colors(10), ids(0), 1);
+        store.close();
+        overwrite(file, 8, 0x00);
+
+        ItemStore.open(file);
+    }
+
+    @Test(expected = ItemStore.CorruptException.class)
+    public void logWithoutSnapshotFailsToOpen() throws IOException {
+        ItemStore store = ItemStore.open(file);
+        ItemStore.Edits edits = new ItemStore.Edits();
+        edits.inserted(0, 0, 10);
+        store.append(edits, 1);
+        store.close();
+        assertTrue(file.delete());
+
+        ItemStore.open(file);
+    }
+
+    private void assertStored(long nextId, LongList ids, IntList colors) throws IOException {
+        assertStored(nextId, ids.toArray(), colors.toArray());
+    }
+
+    private void assertStored(long nextId, long[] ids, int[] colors) throws IOException {
+        ItemStore store = ItemStore.open(file);
+        try {
+            assertEquals(ids.length, store.size());
+            assertEquals(nextId, store.nextId());
+            assertArrayEquals(ids, store.copyIds().toArray());
+            assertArrayEquals(colors, store.copyColors().toArray());
+        } finally {
+            store.close();
+        }
+    }
+
+    private static IntList colors(int... values) {
+        IntList list = new IntList();
+        list.addAll(values);
+        return list;
+    }
+
+    private static LongList ids(long... values) {
+        LongList list = new LongList();
+        list.addAll(values);
+        return list;
+    }
+
+    private static void truncate(File file, long length) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(length);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static void overwrite(File file, long offset, int value) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(offset);
+            for (int i = 0; i < 8; i++) {
+                raf.write(value);
+            }
+        } finally {
+            raf.close();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package examples.android.com.recyclerviewanimations;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Plain JVM tests of the MutationPipeline, driven through an ItemList whose worker and
+ * main thread are queues the test runs by hand.
+ */
+public class MutationPipelineTest {
+
+    private final QueueExecutor worker = new QueueExecutor();
+    private final QueueExecutor main = new QueueExecutor();
+    private final RecordingCallback callback = new RecordingCallback();
+    private ItemList items;
+
+    @Before
+    public void setUp() {
+        items = new ItemList(callback, worker, main, main, main);
+        callback.items = items;
+        items.addAll(new int[]{10, 11, 12});
+        callback.events.clear();
+    }
+
+    @Test
+    public void appliesMutationsInOrder() {
+        items.postSet(1, 21);
+        // goes in front of id 1, then is removed again
+        items.postInsert(1, 30);
+        items.postRemove(3);
+        items.postRemove(0);
+        assertColors(10, 11, 12);
+
+        worker.runAll();
+        assertColors(10, 11, 12);
+        main.runAll();
+        assertColors(21, 12);
+        assertIds(1, 2);
+        assertEquals(2, callback.size);
+    }
+
+    @Test
+    public void dropsMutationsOfRemovedItems() {
+        items.postRemove(1);
+        items.postSet(1, 21);
+        items.postInsert(1, 30);
+        worker.runAll();
+        main.runAll();
+        assertColors(10, 12);
+        assertEquals(Arrays.asList("removed 1 1"), callback.events);
+    }
+
+    @Test
+    public void replaysBatchOnListEditedInTheMeantime() {
+        items.postInsert(2, 30);
+        worker.runAll();
+        // the batch was built on the list before this edit
+        items.insertItem(0, 40);
+        main.runAll();
+        assertColors(40, 10, 11, 30, 12);
+        assertEquals(5, callback.size);
+
+        // the worker builds on the replayed list from now on
+        items.postSet(2, 22);
+        worker.runAll();
+        main.runAll();
+        assertColors(40, 10, 11, 30, 22);
+    }
+
+    @Test
+    public void buildsInRecycledListsInsteadOfCopying() {
+        int[] colors = new int[1000];
+        items.clear();
+        items.addAll(colors);
+        int copies = items.pipelineCopyCount();
+        for (int i = 0; i < 100; i++) {
+            items.postSet(items.idAt(i), i);
+            worker.runAll();
+            main.runAll();
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, items.colorAt(i));
+        }
+        // the first batch after the list was handed over copies it, the rest reuse the
+        // lists each batch replaced
+        assertTrue("copied " + (items.pipelineCopyCount() - copies) + " times",
+                items.pipelineCopyCount() - copies <= 2);
+    }
+
+    @Test
+    public void matchesModelUnderRandomInterleaving() {
+        Random random = new Random(3);
+        // what the list should be; posted mutations reach it in the order batches do
+        List<Long> modelIds = new ArrayList<>(Arrays.asList(0L, 1L, 2L));
+        List<Integer> modelColors = new ArrayList<>(Arrays.asList(10, 11, 12));
+        List<long[]> posted = new ArrayList<>();
+        List<List<long[]>> batches = new ArrayList<>();
+        long nextId = 3;
+        for (int step = 0; step < 5000; step++) {
+            int size = items.size();
+            switch (random.nextInt(7)) {
+                case 0:
+                case 1:
+                    if (size > 0) {
+                        long id = items.idAt(random.nextInt(size));
+                        int kind = random.nextInt(3);
+                        int color = random.nextInt(1000);
+                        if (kind == 0) {
+                            items.postInsert(id, color);
+                            posted.add(new long[]{kind, id, color, nextId++});
+                        } else if (kind == 1) {
+                            items.postRemove(id);
+                            posted.add(new long[]{kind, id});
+                        } else {
+                            items.postSet(id, color);
+                            posted.add(new long[]{kind, id, color});
+                        }
+                    }
+                    break;
+                case 2:
+                    // one drain takes everything posted so far
+                    if (worker.runAll() > 0) {
+                        batches.add(posted);
+                        posted = new ArrayList<>();
+                    }
+                    break;
+                case 3:
+                    main.runAll();
+                    for (List<long[]> batch : batches) {
+                        for (long[] mutation : batch) {
+                            applyToModel(mutation, modelIds, modelColors);
+                        }
+                    }
+                    batches.clear();
+                    break;
+                case 4:
+                    int position = random.nextInt(size + 1);
+                    int color = random.nextInt(1000);
+                    items.insertItem(position, color);
+                    modelIds.add(position, nextId++);
+                    modelColors.add(position, color);
+                    break;
+                case 5:
+                    if (size > 1) {
+                        position = random.nextInt(size);
+                        items.removeItem(position);
+                        modelIds.remove(position);
+                        modelColors.remove(position);
+                    }
+                    break;
+                case 6:
+                    if (size > 0) {
+                        int from = random.nextInt(size);
+                        int to = random.nextInt(size);
+                        items.moveItem(from, to);
+                        modelIds.add(to, modelIds.remove(from));
+                        modelColors.add(to, modelColors.remove(from));
+                    }
+                    break;
+            }
+            assertEquals("step " + step, modelIds.size(), items.size());
+            for (int i = 0; i < modelIds.size(); i++) {
+                assertEquals("step " + step, (long) modelIds.get(i), items.idAt(i));
+                assertEquals("step " + step, (int) modelColors.get(i), items.colorAt(i));
+                assertEquals("step " + step, i, items.positionOf(modelIds.get(i)));
+            }
+            assertEquals("step " + step, items.size(), callback.size);
+        }
+    }
+
+    private static void applyToModel(long[] mutation, List<Long> ids, List<Integer> colors) {
+        int position = ids.indexOf(mutation[1]);
+        if (position < 0) {
+            return;
+        }
+        switch ((int) mutation[0]) {
+            case 0:
+                ids.add(position, mutation[3]);
+                colors.add(position, (int) mutation[2]);
+                break;
+            case 1:
+                ids.remove(position);
+                colors.remove(position);
+                break;
+            case 2:
+                colors.set(position, (int) mutation[2]);
+                break;
+        }
+    }
+
+    private void assertColors(int... expected) {
+        int[] actual = new int[items.size()];
+        for (int i = 0; i < actual.length; i++) {
+            actual[i] = items.colorAt(i);
+        }
+        assertArrayEquals(expected, actual);
+    }
+
+    private void assertIds(long... expected) {
+        long[] actual = new long[items.size()];
+        for (int i = 0; i < actual.length; i++) {
+            actual[i] = items.idAt(i);
+        }
+        assertArrayEquals(expected, actual);
+    }
+}
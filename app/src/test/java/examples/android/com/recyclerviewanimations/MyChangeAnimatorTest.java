@@ -0,0 +1,229 @@
+package examples.android.com.recyclerviewanimations;
+
+import android.graphics.drawable.ColorDrawable;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Stress tests for the bookkeeping of running change animations: thousands of
+ * concurrent animations interrupted over and over, and ending them one by one or all at
+ * once, must leave exactly one animation per holder and finish every one exactly once.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class MyChangeAnimatorTest {
+    private static final int HOLDERS = 2000;
+    // time between interrupting changes; adds up to a point in the second half with
+    // every animation still running, so interrupts happen in both halves
+    private static final long[] INTERRUPT_AFTER = {100, 250, 100, 30, 10};
+    private static final int INTERRUPT_ROUNDS = INTERRUPT_AFTER.length;
+
+    private final RecyclerView.State state = new RecyclerView.State();
+    private final Random random = new Random(42);
+    private CountingAnimator animator;
+    private ItemMetrics metrics;
+    private MyViewHolder[] holders;
+    private int[] finalColors;
+
+    @Before
+    public void setUp() {
+        ShadowLooper.pauseMainLooper();
+        metrics = new ItemMetrics();
+        metrics.setEnabled(true);
+        animator = new CountingAnimator();
+        animator.setMetrics(metrics);
+        LayoutInflater inflater = LayoutInflater.from(RuntimeEnvironment.application);
+        holders = new MyViewHolder[HOLDERS];
+        finalColors = new int[HOLDERS];
+        for (int i = 0; i < HOLDERS; i++) {
+            holders[i] = new MyViewHolder(inflater.inflate(R.layout.item_layout, null));
+            holders[i].update(randomColor());
+        }
+    }
+
+    @Test
+    public void thousandsOfInterruptsKeepOneAnimationPerHolder() {
+        changeAll();
+        for (int round = 0; round < INTERRUPT_ROUNDS; round++) {
+            advance(INTERRUPT_AFTER[round]);
+            changeAll();
+
+            // the interrupted animations have finished, the new ones all run
+            assertEquals(HOLDERS * (round + 1), animator.finished);
+            assertEquals(HOLDERS, metrics.snapshot().runningAnimations);
+            Set<Integer> slots = new HashSet<>();
+            for (MyViewHolder holder : holders) {
+                assertTrue(holder.changeAnimationSlot >= 0);
+                assertTrue("slot shared", slots.add(holder.changeAnimationSlot));
+            }
+        }
+        ItemMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(HOLDERS * (INTERRUPT_ROUNDS + 1), snapshot.animationStarts);
+        assertEquals(HOLDERS * INTERRUPT_ROUNDS, snapshot.animationInterrupts);
+        assertEquals(HOLDERS, snapshot.runningAnimationsHighWater);
+
+        animator.endAnimations();
+        assertFalse(animator.isRunning());
+        assertEquals(HOLDERS * (INTERRUPT_ROUNDS + 1), animator.finished);
+        assertEnded();
+    }
+
+    @Test
+    public void endAnimationEndsOnlyItsHolder() {
+        changeAll();
+        advance(ChangeFrames.HALF_DURATION / 2);
+        // end every other holder, in reverse so that slots keep moving underneath
+        for (int i = HOLDERS - 1; i >= 0; i -= 2) {
+            animator.endAnimation(holders[i]);
+            assertEnded(i);
+        }
+        assertEquals(HOLDERS / 2, animator.finished);
+        assertTrue(animator.isRunning());
+        for (int i = 0; i < HOLDERS; i += 2) {
+            assertTrue(holders[i].changeAnimationSlot >= 0);
+        }
+        // ending a holder that is not animating changes nothing
+        animator.endAnimation(holders[HOLDERS - 1]);
+        assertEquals(HOLDERS / 2, animator.finished);
+
+        advance(2 * ChangeFrames.HALF_DURATION);
+        assertFalse(animator.isRunning());
+        assertEquals(HOLDERS, animator.finished);
+        assertEnded();
+    }
+
+    @Test
+    public void animationsEndingTogetherAllFinish() {
+        changeAll();
+        advance(2 * ChangeFrames.HALF_DURATION + 1);
+        assertFalse(animator.isRunning());
+        assertEquals(HOLDERS, animator.finished);
+        assertEnded();
+    }
+
+    @Test
+    public void steadyStateAllocatesNoMoreThanViewUpdates() {
+        AllocationCounter allocations = AllocationCounter.forCurrentThread();
+        // RecyclerView hands the animator new holder infos for every change; those are
+        // its allocations, not the animator's, so the same ones are used over and over
+        RecyclerView.ItemAnimator.ItemHolderInfo[] preInfos =
+                new RecyclerView.ItemAnimator.ItemHolderInfo[HOLDERS];
+        RecyclerView.ItemAnimator.ItemHolderInfo[] postInfos =
+                new RecyclerView.ItemAnimator.ItemHolderInfo[HOLDERS];
+        for (int i = 0; i < HOLDERS; i++) {
+            preInfos[i] = animator.recordPreLayoutInformation(state, holders[i],
+                    RecyclerView.ItemAnimator.FLAG_CHANGED, Collections.<Object>emptyList());
+            holders[i].update(randomColor());
+            postInfos[i] = animator.recordPostLayoutInformation(state, holders[i]);
+        }
+        // the first rounds grow the slots and fill whatever the runtime caches
+        for (int round = 0; round < 2; round++) {
+            changeAll(preInfos, postInfos);
+            advance(INTERRUPT_AFTER[round]);
+        }
+        metrics.reset();
+        allocations.reset();
+        for (int round = 0; round < INTERRUPT_ROUNDS; round++) {
+            changeAll(preInfos, postInfos);
+            advance(INTERRUPT_AFTER[round]);
+        }
+        long animating = allocations.allocated();
+        long updates = metrics.snapshot().animationUpdates;
+
+        // what the same view updates cost when made directly: whatever the views, or the
+        // test runtime under them, allocate per call is not the animator's doing
+        allocations.reset();
+        for (int round = 0; round < INTERRUPT_ROUNDS; round++) {
+            for (MyViewHolder holder : holders) {
+                // the old text goes back at the start, the new one in at the switch
+                holder.updateLabel(holder.getLabel());
+                holder.updateLabel(holder.getLabel());
+            }
+        }
+        for (long i = 0; i < updates; i++) {
+            MyViewHolder holder = holders[(int) (i % HOLDERS)];
+            holder.container.setBackgroundColor((int) i | 0xff000000);
+            holder.getTextView().setRotationX(i % 90);
+        }
+        long direct = allocations.allocated();
+
+        // a few bytes per change of slack, against the kilobytes a graph of animators
+        // per change would take
+        long changes = (long) HOLDERS * INTERRUPT_ROUNDS;
+        assertTrue("animating allocated " + animating + " bytes, the views alone " + direct,
+                animating <= direct + changes * 16);
+        animator.endAnimations();
+    }
+
+    private void changeAll(RecyclerView.ItemAnimator.ItemHolderInfo[] preInfos,
+                           RecyclerView.ItemAnimator.ItemHolderInfo[] postInfos) {
+        for (int i = 0; i < HOLDERS; i++) {
+            assertTrue(animator.animateChange(holders[i], holders[i], preInfos[i],
+                    postInfos[i]));
+        }
+    }
+
+    private void changeAll() {
+        for (int i = 0; i < HOLDERS; i++) {
+            MyViewHolder holder = holders[i];
+            RecyclerView.ItemAnimator.ItemHolderInfo preInfo = animator.recordPreLayoutInformation(
+                    state, holder, RecyclerView.ItemAnimator.FLAG_CHANGED,
+                    Collections.<Object>emptyList());
+            finalColors[i] = randomColor();
+            holder.update(finalColors[i]);
+            RecyclerView.ItemAnimator.ItemHolderInfo postInfo =
+                    animator.recordPostLayoutInformation(state, holder);
+            assertTrue(animator.animateChange(holder, holder, preInfo, postInfo));
+        }
+    }
+
+    private void advance(long millis) {
+        ShadowLooper.idleMainLooper(millis, TimeUnit.MILLISECONDS);
+    }
+
+    private void assertEnded() {
+        for (int i = 0; i < HOLDERS; i++) {
+            assertEnded(i);
+        }
+    }
+
+    private void assertEnded(int index) {
+        MyViewHolder holder = holders[index];
+        assertEquals(-1, holder.changeAnimationSlot);
+        assertEquals(finalColors[index],
+                ((ColorDrawable) holder.container.getBackground()).getColor());
+        assertEquals(finalColors[index], holder.getLabel());
+        assertEquals(0f, holder.getTextView().getRotationX(), 0f);
+    }
+
+    private int randomColor() {
+        return random.nextInt() | 0xff000000;
+    }
+
+    private static class CountingAnimator extends MyChangeAnimator {
+        int finished;
+
+        @Override
+        public void onAnimationFinished(RecyclerView.ViewHolder viewHolder) {
+            finished++;
+        }
+    }
+}
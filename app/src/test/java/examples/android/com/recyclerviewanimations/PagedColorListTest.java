@@ -0,0 +1,124 @@
+package examples.android.com.recyclerviewanimations;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Plain JVM tests of PagedColorList's loading, prefetching and eviction. Pages are loaded
+ * and handed back on queues the test runs by hand.
+ */
+public class PagedColorListTest {
+    private static final int PLACEHOLDER = -1;
+
+    private final QueueExecutor worker = new QueueExecutor();
+    private final QueueExecutor main = new QueueExecutor();
+    // start of every page loaded, in order
+    private final List<Integer> loads = new ArrayList<>();
+    private final List<String> loaded = new ArrayList<>();
+    private PagedColorList list;
+
+    @Before
+    public void setUp() {
+        // 20 pages of 10; the color of an item is its position
+        list = new PagedColorList(new PagedColorList.PageLoader() {
+            @Override
+            public void loadPage(int start, int count, int[] out) {
+                loads.add(start);
+                for (int i = 0; i < count; i++) {
+                    out[i] = start + i;
+                }
+            }
+        }, worker, main, 200, 10, 3);
+        list.setCallback(new PagedColorList.Callback() {
+            @Override
+            public void onItemRangeLoaded(int start, int count) {
+                loaded.add(start + " " + count);
+            }
+        });
+    }
+
+    @Test
+    public void pageIsLoadedOnFirstGet() {
+        assertEquals(PLACEHOLDER, list.get(3, PLACEHOLDER));
+        assertFalse(list.isLoaded(3));
+        worker.runAll();
+        main.runAll();
+        assertEquals(Arrays.asList("0 10"), loaded);
+        assertTrue(list.isLoaded(3));
+        assertEquals(3, list.get(3, PLACEHOLDER));
+    }
+
+    @Test
+    public void prefetchFollowsScrollDirection() {
+        // heading down, the page below is loaded once the binds are past half the page
+        list.get(50, PLACEHOLDER);
+        list.get(54, PLACEHOLDER);
+        assertEquals(Arrays.asList(50), runLoads());
+        list.get(55, PLACEHOLDER);
+        assertEquals(Arrays.asList(60), runLoads());
+        // the start of the page does not make a downward scroll load the page above
+        list.get(61, PLACEHOLDER);
+        list.get(62, PLACEHOLDER);
+        assertEquals(Arrays.<Integer>asList(), runLoads());
+        // heading up, it does
+        list.get(52, PLACEHOLDER);
+        assertEquals(Arrays.asList(40), runLoads());
+    }
+
+    @Test
+    public void pageEvictedOnArrivalIsNotAnnounced() {
+        list.get(100, PLACEHOLDER);
+        list.get(110, PLACEHOLDER);
+        list.get(120, PLACEHOLDER);
+        runLoads();
+        assertEquals(Arrays.asList("100 10", "110 10", "120 10"), loaded);
+        // a jump to the top and straight back, before the top page has arrived
+        list.get(0, PLACEHOLDER);
+        list.get(122, PLACEHOLDER);
+        assertEquals(Arrays.asList(0), runLoads());
+        assertEquals(3, loaded.size());
+        assertFalse(list.isLoaded(0));
+        assertTrue(list.isLoaded(100));
+        assertTrue(list.isLoaded(122));
+    }
+
+    @Test
+    public void lastPageIsShort() {
+        list = new PagedColorList(new PagedColorList.PageLoader() {
+            @Override
+            public void loadPage(int start, int count, int[] out) {
+                loads.add(start);
+                assertEquals(5, count);
+            }
+        }, worker, main, 25, 10, 3);
+        list.get(20, PLACEHOLDER);
+        // past half the page, but there is no page after it to prefetch
+        list.get(24, PLACEHOLDER);
+        assertEquals(Arrays.asList(20), runLoads());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getPastEndThrows() {
+        list.get(200, PLACEHOLDER);
+    }
+
+    /**
+     * Runs the loads requested since the last call and hands their pages back.
+     *
+     * @return the start of each page loaded
+     */
+    private List<Integer> runLoads() {
+        loads.clear();
+        worker.runAll();
+        main.runAll();
+        return new ArrayList<>(loads);
+    }
+}
@@ -0,0 +1,48 @@
+package examples.android.com.recyclerviewanimations;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+/**
+ * Executor for plain JVM tests that holds its tasks until the test runs them, so that a
+ * test decides exactly how background work and main thread work interleave.
+ */
+class QueueExecutor implements Executor {
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+    @Override
+    public void execute(Runnable command) {
+        tasks.add(command);
+    }
+
+    /**
+     * Runs the queued tasks, including those they queue, until there are none left.
+     *
+     * @return the number of tasks run
+     */
+    int runAll() {
+        int count = 0;
+        for (Runnable task; (task = tasks.poll()) != null; count++) {
+            task.run();
+        }
+        return count;
+    }
+
+    /**
+     * Runs the oldest queued task, if there is one.
+     *
+     * @return whether there was one
+     */
+    boolean runNext() {
+        Runnable task = tasks.poll();
+        if (task == null) {
+            return false;
+        }
+        task.run();
+        return true;
+    }
+
+    boolean isEmpty() {
+        return tasks.isEmpty();
+    }
+}
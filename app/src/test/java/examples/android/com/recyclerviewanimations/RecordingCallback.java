@@ -0,0 +1,64 @@
+package examples.android.com.recyclerviewanimations;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ItemList.Callback for plain JVM tests. It records the notifications, and keeps the
+ * size of the list they describe, the way a RecyclerView would see it.
+ */
+class RecordingCallback implements ItemList.Callback {
+    final List<String> events = new ArrayList<>();
+    ItemList items;
+    int size;
+
+    @Override
+    public void onInserted(int position, int count) {
+        checkRange(position, 0, count);
+        events.add("inserted " + position + " " + count);
+        size += count;
+    }
+
+    @Override
+    public void onRemoved(int position, int count) {
+        checkRange(position, count, count);
+        events.add("removed " + position + " " + count);
+        size -= count;
+    }
+
+    @Override
+    public void onMoved(int fromPosition, int toPosition) {
+        checkRange(fromPosition, 1, 0);
+        checkRange(toPosition, 1, 0);
+        events.add("moved " + fromPosition + " " + toPosition);
+    }
+
+    @Override
+    public void onChanged(int position, int count, Object payload) {
+        checkRange(position, count, count);
+        events.add("changed " + position + " " + count);
+    }
+
+    @Override
+    public void onDataSetChanged() {
+        events.add("data set changed");
+        size = items.size();
+    }
+
+    @Override
+    public void onStoreFailed(IOException e) {
+        events.add("store failed");
+    }
+
+    /**
+     * Checks that [position, position + length) is within the list as it was notified so
+     * far, with the range at least {@code count} long.
+     */
+    private void checkRange(int position, int length, int count) {
+        if (position < 0 || position + length > size || count < 0) {
+            throw new AssertionError("position " + position + ", count " + count
+                    + " outside a list of " + size);
+        }
+    }
+}
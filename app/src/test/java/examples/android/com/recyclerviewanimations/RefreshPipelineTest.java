@@ -0,0 +1,180 @@
+package examples.android.com.recyclerviewanimations;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Plain JVM tests of RefreshPipeline with edits of the list made while its chunks arrive.
+ * The worker and the main thread are queues the test runs by hand.
+ */
+public class RefreshPipelineTest {
+    private static final int[] OLD_COLORS = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+    private static final int[] NEW_COLORS = {100, 101, 102, 103, 104, 105, 106, 107, 108};
+
+    private final QueueExecutor worker = new QueueExecutor();
+    private final QueueExecutor refreshWorker = new QueueExecutor();
+    private final QueueExecutor main = new QueueExecutor();
+    // the main thread too, but only for the refresh's chunks, so that a test can put
+    // other main thread work in between them
+    private final QueueExecutor chunks = new QueueExecutor();
+    private final RecordingCallback callback = new RecordingCallback();
+    private final RecordingListener listener = new RecordingListener();
+    private ItemList items;
+    private RefreshPipeline refreshPipeline;
+
+    @Before
+    public void setUp() {
+        items = new ItemList(callback, worker, main, main, main);
+        callback.items = items;
+        items.addAll(OLD_COLORS);
+        refreshPipeline = new RefreshPipeline(items, refreshWorker, chunks);
+        // three chunks of three, then the end
+        refreshPipeline.start(new ArraySource(NEW_COLORS, 3), 3, listener);
+        refreshWorker.runAll();
+    }
+
+    @Test
+    public void refreshWithoutEditsReplacesList() {
+        chunks.runAll();
+        assertColors(NEW_COLORS);
+        assertEquals(NEW_COLORS.length, listener.finishedSize);
+        assertEquals(items.size(), callback.size);
+    }
+
+    @Test
+    public void removalsInFrontOfRefreshDoNotThrow() {
+        // the first chunk
+        chunks.runNext();
+        for (int i = 0; i < 8; i++) {
+            items.removeItem(0);
+        }
+        chunks.runAll();
+        // the next chunk went where the first one ended, which had been removed
+        assertColors(103, 104, 105, 106, 107, 108);
+        assertEquals(items.size(), callback.size);
+    }
+
+    @Test
+    public void itemInsertedDuringRefreshIsKept() {
+        chunks.runNext();
+        items.insertItem(1, 50);
+        long insertedId = items.idAt(1);
+        chunks.runAll();
+        assertColors(100, 50, 101, 102, 103, 104, 105, 106, 107, 108);
+        assertEquals(insertedId, items.idAt(1));
+        assertEquals(items.size(), listener.finishedSize);
+        assertEquals(items.size(), callback.size);
+    }
+
+    @Test
+    public void itemMovedInFrontOfRefreshIsKept() {
+        chunks.runNext();
+        items.moveItem(9, 0);
+        chunks.runAll();
+        assertColors(9, 100, 101, 102, 103, 104, 105, 106, 107, 108);
+        assertEquals(items.size(), callback.size);
+    }
+
+    @Test
+    public void pipelineEditsDuringRefreshAreFollowed() {
+        chunks.runNext();
+        items.postRemove(items.idAt(4));
+        items.postInsert(items.idAt(0), 50);
+        worker.runAll();
+        // the batch goes in between the first chunk and the second
+        main.runAll();
+        chunks.runAll();
+        assertColors(50, 100, 101, 102, 103, 104, 105, 106, 107, 108);
+        assertEquals(items.size(), callback.size);
+    }
+
+    @Test
+    public void removalsBehindRefreshAreNotRefilled() {
+        chunks.runNext();
+        chunks.runNext();
+        // items the refresh has not reached yet
+        items.removeItem(7);
+        items.removeItem(7);
+        items.removeItem(7);
+        chunks.runAll();
+        // the old list was one longer than the new one; the refresh now appends instead
+        assertColors(NEW_COLORS);
+        assertEquals(items.size(), callback.size);
+    }
+
+    @Test
+    public void newRefreshStartsOverAtTheFront() {
+        chunks.runNext();
+        refreshPipeline.start(new ArraySource(new int[]{200, 201}, 3), 3, listener);
+        refreshWorker.runAll();
+        chunks.runAll();
+        assertColors(200, 201);
+        assertEquals(Arrays.asList(2), listener.finished);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void chunkWithoutRefreshThrows() {
+        refreshPipeline.cancel();
+        items.mergeRefreshChunk(new int[]{1});
+    }
+
+    private void assertColors(int... expected) {
+        int[] actual = new int[items.size()];
+        for (int i = 0; i < actual.length; i++) {
+            actual[i] = items.colorAt(i);
+        }
+        assertArrayEquals(expected, actual);
+        assertTrue(chunks.isEmpty());
+    }
+
+    private static class ArraySource implements RefreshPipeline.Source {
+        private final int[] colors;
+        private final int maxChunk;
+        private int read;
+
+        ArraySource(int[] colors, int maxChunk) {
+            this.colors = colors;
+            this.maxChunk = maxChunk;
+        }
+
+        @Override
+        public int[] read(int maxCount) {
+            if (read == colors.length) {
+                return null;
+            }
+            int count = Math.min(Math.min(maxCount, maxChunk), colors.length - read);
+            int[] chunk = Arrays.copyOfRange(colors, read, read + count);
+            read += count;
+            return chunk;
+        }
+    }
+
+    private static class RecordingListener implements RefreshPipeline.Listener {
+        final List<Integer> finished = new ArrayList<>();
+        int finishedSize = -1;
+
+        @Override
+        public void onFirstPage() {
+        }
+
+        @Override
+        public void onFinished(int size) {
+            finished.add(size);
+            finishedSize = size;
+        }
+
+        @Override
+        public void onFailed(IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package examples.android.com.recyclerviewanimations;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Plain JVM tests of SrgbBlend against the floating-point math of ArgbEvaluator (API 26).
+ */
+public class SrgbBlendTest {
+
+    @Test
+    public void matchesArgbEvaluatorWithinOneStep() {
+        Random random = new Random(42);
+        for (int i = 0; i < 200000; i++) {
+            int from = random.nextInt();
+            int to = random.nextInt();
+            float fraction = random.nextFloat();
+            assertWithinOneStep(argbEvaluator(from, to, fraction), SrgbBlend.blend(from, to, fraction));
+        }
+    }
+
+    @Test
+    public void matchesArgbEvaluatorNearBlack() {
+        // where the sRGB curve is steepest
+        Random random = new Random(7);
+        for (int i = 0; i < 100000; i++) {
+            int to = random.nextInt();
+            float fraction = random.nextFloat() * 0.01f;
+            assertWithinOneStep(argbEvaluator(0xff000000, to, fraction),
+                    SrgbBlend.blend(0xff000000, to, fraction));
+            assertWithinOneStep(argbEvaluator(to, 0xff000000, 1 - fraction),
+                    SrgbBlend.blend(to, 0xff000000, 1 - fraction));
+        }
+    }
+
+    @Test
+    public void endsAreExact() {
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            int from = random.nextInt();
+            int to = random.nextInt();
+            assertEquals(from, SrgbBlend.blend(from, to, 0));
+            assertEquals(to, SrgbBlend.blend(from, to, SrgbBlend.ONE));
+        }
+    }
+
+    @Test
+    public void toSrgbInvertsToLinear() {
+        for (int v = 0; v < 256; v++) {
+            assertEquals(v, SrgbBlend.toSrgb(SrgbBlend.toLinear(v)));
+        }
+    }
+
+    private static void assertWithinOneStep(int expected, int actual) {
+        for (int shift = 0; shift < 32; shift += 8) {
+            int difference = ((expected >>> shift) & 0xff) - ((actual >>> shift) & 0xff);
+            assertTrue(Integer.toHexString(expected) + " vs " + Integer.toHexString(actual),
+                    Math.abs(difference) <= 1);
+        }
+    }
+
+    // android.animation.ArgbEvaluator.evaluate() as of API 26
+    private static int argbEvaluator(int startInt, int endInt, float fraction) {
+        float startA = ((startInt >> 24) & 0xff) / 255.0f;
+        float startR = ((startInt >> 16) & 0xff) / 255.0f;
+        float startG = ((startInt >> 8) & 0xff) / 255.0f;
+        float startB = (startInt & 0xff) / 255.0f;
+
+        float endA = ((endInt >> 24) & 0xff) / 255.0f;
+        float endR = ((endInt >> 16) & 0xff) / 255.0f;
+        float endG = ((endInt >> 8) & 0xff) / 255.0f;
+        float endB = (endInt & 0xff) / 255.0f;
+
+        startR = (float) Math.pow(startR, 2.2);
+        startG = (float) Math.pow(startG, 2.2);
+        startB = (float) Math.pow(startB, 2.2);
+
+        endR = (float) Math.pow(endR, 2.2);
+        endG = (float) Math.pow(endG, 2.2);
+        endB = (float) Math.pow(endB, 2.2);
+
+        float a = startA + fraction * (endA - startA);
+        float r = startR + fraction * (endR - startR);
+        float g = startG + fraction * (endG - startG);
+        float b = startB + fraction * (endB - startB);
+
+        a = a * 255.0f;
+        r = (float) Math.pow(r, 1.0 / 2.2) * 255.0f;
+        g = (float) Math.pow(g, 1.0 / 2.2) * 255.0f;
+        b = (float) Math.pow(b, 1.0 / 2.2) * 255.0f;
+
+        return Math.round(a) << 24 | Math.round(r) << 16 | Math.round(g) << 8 | Math.round(b);
+    }
+}
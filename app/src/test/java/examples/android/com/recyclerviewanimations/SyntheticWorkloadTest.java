@@ -0,0 +1,107 @@
+package examples.android.com.recyclerviewanimations;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Plain JVM tests of SyntheticWorkload: the same seed gives the same colors and scripts
+ * however they are produced, and scripts only name positions the list has.
+ */
+public class SyntheticWorkloadTest {
+
+    @Test
+    public void parallelFillMatchesSerialColors() throws InterruptedException {
+        int count = 300001;
+        SyntheticWorkload serial = new SyntheticWorkload(42);
+        int[] expected = new int[count];
+        for (int i = 0; i < count; i++) {
+            expected[i] = serial.nextColor();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            SyntheticWorkload parallel = new SyntheticWorkload(42);
+            assertArrayEquals(expected, parallel.nextColors(count, executor));
+            // and carries on where the fill ended
+            assertEquals(serial.nextColor(), parallel.nextColor());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void colorsAreOpaqueAndDark() {
+        SyntheticWorkload workload = new SyntheticWorkload(7);
+        for (int i = 0; i < 10000; i++) {
+            int color = workload.nextColor();
+            assertEquals(0xff, color >>> 24);
+            assertTrue((color >> 16 & 0xff) < 200);
+            assertTrue((color >> 8 & 0xff) < 200);
+            assertTrue((color & 0xff) < 200);
+        }
+    }
+
+    @Test
+    public void splitsAreReproducible() {
+        SyntheticWorkload first = new SyntheticWorkload(1).split();
+        SyntheticWorkload second = new SyntheticWorkload(1).split();
+        for (int i = 0; i < 100; i++) {
+            assertEquals(first.nextLong(), second.nextLong());
+        }
+    }
+
+    @Test
+    public void scriptsStayWithinTheList() {
+        SyntheticWorkload.Script script = new SyntheticWorkload(3)
+                .nextScript(10, 20000, 3, 4, 2, 1, 2.0);
+        IntList colors = new IntList();
+        for (int i = 0; i < script.initialSize; i++) {
+            colors.add(0);
+        }
+        int[] counts = new int[4];
+        for (int i = 0; i < script.length(); i++) {
+            int position = script.position(i);
+            int type = script.type(i);
+            counts[type]++;
+            switch (type) {
+                case SyntheticWorkload.ADD:
+                    assertTrue(position >= 0 && position <= colors.size());
+                    colors.add(position, script.argument(i));
+                    break;
+                case SyntheticWorkload.DELETE:
+                    colors.remove(position);
+                    break;
+                case SyntheticWorkload.CHANGE:
+                    colors.set(position, script.argument(i));
+                    break;
+                case SyntheticWorkload.MOVE:
+                    assertTrue(position != script.argument(i));
+                    colors.move(position, script.argument(i));
+                    break;
+            }
+        }
+        assertEquals(script.finalSize, colors.size());
+        // all four kinds show up
+        for (int count : counts) {
+            assertTrue(count > 0);
+        }
+    }
+
+    @Test
+    public void sameSeedGivesSameScript() {
+        SyntheticWorkload.Script first = new SyntheticWorkload(9).nextScript(50, 500, 1, 1, 1, 1, 1.5);
+        SyntheticWorkload.Script second = new SyntheticWorkload(9).nextScript(50, 500, 1, 1, 1, 1, 1.5);
+        assertEquals(first.length(), second.length());
+        for (int i = 0; i < first.length(); i++) {
+            assertEquals(first.type(i), second.type(i));
+            assertEquals(first.position(i), second.position(i));
+            assertEquals(first.argument(i), second.argument(i));
+        }
+    }
+}
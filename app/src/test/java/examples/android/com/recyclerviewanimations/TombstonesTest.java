@@ -0,0 +1,94 @@
+package examples.android.com.recyclerviewanimations;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Plain JVM tests of Tombstones against a list of flags, through dismissals, restores
+ * and the edits of the list it follows.
+ */
+public class TombstonesTest {
+
+    @Test
+    public void matchesModelThroughEdits() {
+        Random random = new Random(17);
+        List<Boolean> model = new ArrayList<>();
+        Tombstones tombstones = new Tombstones();
+        tombstones.reset(0);
+        for (int step = 0; step < 20000; step++) {
+            int length = model.size();
+            switch (random.nextInt(6)) {
+                case 0:
+                    if (length > 0) {
+                        int index = random.nextInt(length);
+                        tombstones.add(index);
+                        model.set(index, true);
+                    }
+                    break;
+                case 1:
+                    if (length > 0) {
+                        int index = random.nextInt(length);
+                        tombstones.remove(index);
+                        model.set(index, false);
+                    }
+                    break;
+                case 2:
+                case 3:
+                    // inserts outnumber removals, so the list grows past a few words
+                    int index = random.nextInt(length + 1);
+                    int removed = random.nextInt(Math.min(3, length - index) + 1);
+                    // mostly small edits, now and then one spanning several words
+                    int inserted = random.nextInt(random.nextInt(20) == 0 ? 200 : 4);
+                    tombstones.splice(index, removed, inserted);
+                    for (int i = 0; i < removed; i++) {
+                        model.remove(index);
+                    }
+                    for (int i = 0; i < inserted; i++) {
+                        model.add(index, false);
+                    }
+                    break;
+                case 4:
+                    if (length > 0) {
+                        int from = random.nextInt(length);
+                        int to = random.nextInt(length);
+                        tombstones.move(from, to);
+                        model.add(to, model.remove(from));
+                    }
+                    break;
+                case 5:
+                    if (random.nextInt(100) == 0) {
+                        int newLength = random.nextInt(300);
+                        tombstones.reset(newLength);
+                        model.clear();
+                        for (int i = 0; i < newLength; i++) {
+                            model.add(false);
+                        }
+                    }
+                    break;
+            }
+            assertMatches("step " + step, model, tombstones);
+        }
+    }
+
+    private static void assertMatches(String message, List<Boolean> model,
+                                      Tombstones tombstones) {
+        int dismissed = 0;
+        int live = 0;
+        for (int i = 0; i < model.size(); i++) {
+            assertEquals(message, model.get(i), tombstones.contains(i));
+            assertEquals(message, live, tombstones.liveRank(i));
+            if (model.get(i)) {
+                dismissed++;
+            } else {
+                assertEquals(message, i, tombstones.liveIndex(live));
+                live++;
+            }
+        }
+        assertEquals(message, dismissed, tombstones.count());
+    }
+}
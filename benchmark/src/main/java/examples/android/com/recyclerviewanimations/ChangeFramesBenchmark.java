@@ -0,0 +1,91 @@
+package examples.android.com.recyclerviewanimations;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One frame of the change animator's math for a number of concurrently animating items:
+ * the color and rotation of each, plus resuming an interrupted animation from where it
+ * was, the way MyChangeAnimator.animateChange does. Play times are spread over the whole
+ * animation so that both halves and the interrupted cases are all exercised.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChangeFramesBenchmark {
+
+    @Param({"1", "50"})
+    int animations;
+
+    private int[] fromColors;
+    private int[] toColors;
+    private long[] playTimes;
+    private boolean[] secondHalfOnly;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        fromColors = new int[animations];
+        toColors = new int[animations];
+        playTimes = new long[animations];
+        secondHalfOnly = new boolean[animations];
+        for (int i = 0; i < animations; i++) {
+            fromColors[i] = random.nextInt() | 0xff000000;
+            toColors[i] = random.nextInt() | 0xff000000;
+            secondHalfOnly[i] = random.nextBoolean();
+            long duration = (secondHalfOnly[i] ? 1 : 2) * ChangeFrames.HALF_DURATION;
+            playTimes[i] = random.nextInt((int) duration);
+        }
+    }
+
+    @Benchmark
+    public int advanceFrame() {
+        int result = 0;
+        for (int i = 0; i < animations; i++) {
+            long playTime = playTimes[i];
+            boolean firstHalf = ChangeFrames.isFirstHalf(playTime, secondHalfOnly[i]);
+            long halfPlayTime = ChangeFrames.halfPlayTime(playTime, secondHalfOnly[i]);
+            result += ChangeFrames.color(fromColors[i], toColors[i], firstHalf, halfPlayTime);
+            result += Float.floatToRawIntBits(ChangeFrames.rotation(firstHalf, halfPlayTime));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public int interruptAndResume() {
+        int result = 0;
+        for (int i = 0; i < animations; i++) {
+            long playTime = playTimes[i];
+            // read where the running animation is...
+            boolean firstHalf = ChangeFrames.isFirstHalf(playTime, secondHalfOnly[i]);
+            long seekTime = ChangeFrames.halfPlayTime(playTime, secondHalfOnly[i]);
+            int startColor = firstHalf
+                    ? ChangeFrames.color(fromColors[i], toColors[i], true, seekTime)
+                    : fromColors[i];
+            // ...and apply the first frame of the one taking over from there
+            boolean resumedSecondHalfOnly = !firstHalf;
+            boolean resumedFirstHalf = ChangeFrames.isFirstHalf(seekTime, resumedSecondHalfOnly);
+            long resumedHalfPlayTime = ChangeFrames.halfPlayTime(seekTime, resumedSecondHalfOnly);
+            result += ChangeFrames.color(startColor, toColors[i], resumedFirstHalf,
+                    resumedHalfPlayTime);
+            result += Float.floatToRawIntBits(
+                    ChangeFrames.rotation(resumedFirstHalf, resumedHalfPlayTime));
+        }
+        return result;
+    }
+}
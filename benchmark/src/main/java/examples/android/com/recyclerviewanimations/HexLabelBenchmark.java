@@ -0,0 +1,55 @@
+package examples.android.com.recyclerviewanimations;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting an item label on bind, against the String concatenation it replaced.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HexLabelBenchmark {
+
+    private final char[] buffer = new char[HexLabel.MAX_LENGTH];
+    private int[] colors;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        colors = new int[1024];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = random.nextInt() | 0xff000000;
+        }
+    }
+
+    private int nextColor() {
+        next = (next + 1) & (colors.length - 1);
+        return colors[next];
+    }
+
+    @Benchmark
+    public int formatIntoBuffer() {
+        return HexLabel.format(nextColor(), buffer) + buffer[1];
+    }
+
+    @Benchmark
+    public String concatenateString() {
+        return "#" + Integer.toHexString(nextColor());
+    }
+}
@@ -0,0 +1,113 @@
+package examples.android.com.recyclerviewanimations;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The data operations behind MyAdapter's item actions: insert, remove, long-distance
+ * drag moves and bulk adds on the IntList backing store. Each edit is paired with its
+ * inverse so the list keeps its size across invocations. The boxed swap loop is the
+ * onItemMove implementation IntList.move replaced, kept as a baseline. A drag in ItemList
+ * moves the item's id as well and tells the IdIndex, which moveItemAcrossWholeList adds.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntListBenchmark {
+
+    @Param({"100", "10000", "100000", "1000000"})
+    int size;
+
+    private IntList list;
+    private LongList ids;
+    private IdIndex idIndex;
+    private ArrayList<Integer> boxedList;
+    private int[] page;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        list = new IntList(size + 1);
+        ids = new LongList(size);
+        boxedList = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int color = random.nextInt() | 0xff000000;
+            list.add(color);
+            ids.add(i);
+            boxedList.add(color);
+        }
+        idIndex = new IdIndex();
+        idIndex.positionOf(0, ids);
+        page = new int[100];
+        for (int i = 0; i < page.length; i++) {
+            page[i] = random.nextInt() | 0xff000000;
+        }
+    }
+
+    @Benchmark
+    public int insertAndRemoveAtFront() {
+        list.add(0, 0xff123456);
+        return list.remove(0);
+    }
+
+    @Benchmark
+    public int insertAndRemoveInMiddle() {
+        int middle = size / 2;
+        list.add(middle, 0xff123456);
+        return list.remove(middle);
+    }
+
+    @Benchmark
+    public int moveAcrossWholeList() {
+        list.move(0, size - 1);
+        list.move(size - 1, 0);
+        return list.get(0);
+    }
+
+    @Benchmark
+    public int moveItemAcrossWholeList() {
+        list.move(0, size - 1);
+        ids.move(0, size - 1);
+        idIndex.onMoved(ids, 0, size - 1);
+        list.move(size - 1, 0);
+        ids.move(size - 1, 0);
+        idIndex.onMoved(ids, size - 1, 0);
+        // the next bind or pipeline edit looks the item up again
+        return idIndex.positionOf(0, ids);
+    }
+
+    @Benchmark
+    public int moveAcrossWholeListBySwapLoop() {
+        for (int i = 0; i < size - 1; i++) {
+            Collections.swap(boxedList, i, i + 1);
+        }
+        for (int i = size - 1; i > 0; i--) {
+            Collections.swap(boxedList, i, i - 1);
+        }
+        return boxedList.get(0);
+    }
+
+    @Benchmark
+    public int addAllAndRemoveRange() {
+        list.addAll(page);
+        list.removeRange(size, page.length);
+        return list.size();
+    }
+}
@@ -0,0 +1,107 @@
+package examples.android.com.recyclerviewanimations;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The background colors of one frame of many concurrent change animations, half of them
+ * fading to black and half fading up from it: once through SrgbBlend, and once through
+ * the math of ArgbEvaluator (API 26), with the Integer boxing its TypeEvaluator
+ * interface costs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SrgbBlendBenchmark {
+    private static final int BLACK = 0xff000000;
+
+    @Param({"100", "500"})
+    int animations;
+
+    private int[] colors;
+    private float[] fractions;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        colors = new int[animations];
+        fractions = new float[animations];
+        for (int i = 0; i < animations; i++) {
+            colors[i] = random.nextInt() | 0xff000000;
+            fractions[i] = random.nextFloat();
+        }
+    }
+
+    @Benchmark
+    public int tables() {
+        int result = 0;
+        for (int i = 0; i < animations; i++) {
+            result += (i & 1) == 0
+                    ? SrgbBlend.blend(colors[i], BLACK, fractions[i])
+                    : SrgbBlend.blend(BLACK, colors[i], fractions[i]);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public int argbEvaluator() {
+        int result = 0;
+        for (int i = 0; i < animations; i++) {
+            Object color = (i & 1) == 0
+                    ? evaluate(fractions[i], colors[i], BLACK)
+                    : evaluate(fractions[i], BLACK, colors[i]);
+            result += (Integer) color;
+        }
+        return result;
+    }
+
+    // android.animation.ArgbEvaluator.evaluate() as of API 26
+    private static Object evaluate(float fraction, Object startValue, Object endValue) {
+        int startInt = (Integer) startValue;
+        float startA = ((startInt >> 24) & 0xff) / 255.0f;
+        float startR = ((startInt >> 16) & 0xff) / 255.0f;
+        float startG = ((startInt >> 8) & 0xff) / 255.0f;
+        float startB = (startInt & 0xff) / 255.0f;
+
+        int endInt = (Integer) endValue;
+        float endA = ((endInt >> 24) & 0xff) / 255.0f;
+        float endR = ((endInt >> 16) & 0xff) / 255.0f;
+        float endG = ((endInt >> 8) & 0xff) / 255.0f;
+        float endB = (endInt & 0xff) / 255.0f;
+
+        startR = (float) Math.pow(startR, 2.2);
+        startG = (float) Math.pow(startG, 2.2);
+        startB = (float) Math.pow(startB, 2.2);
+
+        endR = (float) Math.pow(endR, 2.2);
+        endG = (float) Math.pow(endG, 2.2);
+        endB = (float) Math.pow(endB, 2.2);
+
+        float a = startA + fraction * (endA - startA);
+        float r = startR + fraction * (endR - startR);
+        float g = startG + fraction * (endG - startG);
+        float b = startB + fraction * (endB - startB);
+
+        a = a * 255.0f;
+        r = (float) Math.pow(r, 1.0 / 2.2) * 255.0f;
+        g = (float) Math.pow(g, 1.0 / 2.2) * 255.0f;
+        b = (float) Math.pow(b, 1.0 / 2.2) * 255.0f;
+
+        return Math.round(a) << 24 | Math.round(r) << 16 | Math.round(g) << 8 | Math.round(b);
+    }
+}